@@ -0,0 +1,117 @@
+package backend.consutalar_correo.benchmark;
+
+import backend.consutalar_correo.services.serviceImpl.MessageBodyReaderImpl;
+import backend.consutalar_correo.services.serviceImpl.NetflixMessageAnalyzerImpl;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// Ruta caliente de clasificación y extracción sobre un corpus de correos .eml anonimizados.
+// Para ver la tasa de asignación junto al rendimiento:
+//   mvn -Pbenchmark test-compile exec:exec -Djmh.args="EmailClassificationBenchmark -prof gc"
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailClassificationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class MailCorpus {
+
+        @Param({"household-es", "household-en", "temporary-code-es", "temporary-code-pt", "marketing-es"})
+        public String fixture;
+
+        NetflixMessageAnalyzerImpl analyzer;
+        MimeMessage message;
+        String content;
+
+        @Setup
+        public void setUp() throws IOException, MessagingException {
+            analyzer = new NetflixMessageAnalyzerImpl(new MessageBodyReaderImpl());
+            Session session = Session.getInstance(new Properties());
+            try (InputStream in = open("fixtures/eml/" + fixture + ".eml")) {
+                message = new MimeMessage(session, in);
+            }
+            content = analyzer.extractMessageContent(message);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LinkPages {
+
+        NetflixMessageAnalyzerImpl analyzer;
+        // Página sin las frases de la validación rápida: obliga a parsear con Jsoup
+        String confirmationPage;
+        String codePage;
+
+        @Setup
+        public void setUp() throws IOException {
+            analyzer = new NetflixMessageAnalyzerImpl(new MessageBodyReaderImpl());
+            confirmationPage = read("fixtures/pages/household-confirmation.html");
+            codePage = read("fixtures/pages/temporary-code.html");
+        }
+    }
+
+    @Benchmark
+    public String extractMessageContent(MailCorpus corpus) throws IOException, MessagingException {
+        return corpus.analyzer.extractMessageContent(corpus.message);
+    }
+
+    @Benchmark
+    public boolean isHomeUpdateContent(MailCorpus corpus) {
+        return corpus.analyzer.isHomeUpdateContent(corpus.content);
+    }
+
+    @Benchmark
+    public String findNetflixUrlInContent(MailCorpus corpus) {
+        return corpus.analyzer.findNetflixUrlInContent(corpus.content);
+    }
+
+    @Benchmark
+    public boolean isTemporaryCodeContent(MailCorpus corpus) {
+        return corpus.analyzer.isTemporaryCodeContent(corpus.content);
+    }
+
+    @Benchmark
+    public String extractFourDigitCode(LinkPages pages) {
+        return pages.analyzer.extractFourDigitCode(pages.codePage);
+    }
+
+    // Respaldo de validateNetflixHomeLinkOptimized sin la petición HTTP
+    @Benchmark
+    public boolean validateHomeLinkJsoupFallback(LinkPages pages) {
+        return pages.analyzer.isHomeConfirmationPage(pages.confirmationPage);
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream in = EmailClassificationBenchmark.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Fixture no encontrado: " + name);
+        }
+        return in;
+    }
+
+    private static String read(String name) throws IOException {
+        try (InputStream in = open(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
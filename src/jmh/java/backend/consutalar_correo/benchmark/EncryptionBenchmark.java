@@ -0,0 +1,71 @@
+package backend.consutalar_correo.benchmark;
+
+import backend.consutalar_correo.services.serviceImpl.EncryptionServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cifrado de contraseñas: implementación anterior (ECB, Cipher por llamada) frente a GCM con clave derivada y Ciphers reutilizados
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    private static final String SECRET = "myDefaultSecretKey123456";
+    private static final String PASSWORD = "contraseña-de-aplicacion-imap";
+
+    private LegacyEncryption legacy;
+    private EncryptionServiceImpl service;
+    private String legacyCiphertext;
+    private String gcmCiphertext;
+
+    @Setup
+    public void setUp() throws Exception {
+        legacy = new LegacyEncryption(SECRET);
+        service = new EncryptionServiceImpl(SECRET, "actualizaHogar");
+        legacyCiphertext = legacy.encrypt(PASSWORD);
+        gcmCiphertext = service.encrypt(PASSWORD);
+
+        if (!PASSWORD.equals(service.decrypt(legacyCiphertext)) || !PASSWORD.equals(service.decrypt(gcmCiphertext))) {
+            throw new IllegalStateException("El servicio no descifra ambos formatos");
+        }
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        return legacy.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        return legacy.decrypt(legacyCiphertext);
+    }
+
+    @Benchmark
+    public String gcmEncrypt() {
+        return service.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public String gcmDecrypt() {
+        return service.decrypt(gcmCiphertext);
+    }
+
+    // Filas antiguas leídas por el servicio nuevo antes de migrarlas
+    @Benchmark
+    public String pooledLegacyDecrypt() {
+        return service.decrypt(legacyCiphertext);
+    }
+}
@@ -0,0 +1,34 @@
+package backend.consutalar_correo.benchmark;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+
+// Copia del cifrado anterior (Cipher.getInstance y clave reconstruida en cada llamada), solo como línea base
+final class LegacyEncryption {
+
+    private final String encryptionSecret;
+
+    LegacyEncryption(String encryptionSecret) {
+        this.encryptionSecret = encryptionSecret;
+    }
+
+    private SecretKeySpec getSecretKey() {
+        byte[] key = encryptionSecret.getBytes();
+        byte[] keyBytes = new byte[16];
+        System.arraycopy(key, 0, keyBytes, 0, Math.min(key.length, keyBytes.length));
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    String encrypt(String plainText) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, getSecretKey());
+        return Base64.getEncoder().encodeToString(cipher.doFinal(plainText.getBytes()));
+    }
+
+    String decrypt(String encryptedText) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, getSecretKey());
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedText)));
+    }
+}
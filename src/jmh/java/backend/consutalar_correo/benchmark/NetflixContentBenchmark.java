@@ -0,0 +1,76 @@
+package backend.consutalar_correo.benchmark;
+
+import backend.consutalar_correo.dtos.NetflixContentScan;
+import backend.consutalar_correo.services.serviceImpl.NetflixMessageAnalyzerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Clasificación completa de un correo de hogar: detección anterior frente al escaneo único
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetflixContentBenchmark {
+
+    private NetflixMessageAnalyzerImpl analyzer;
+    private String householdHtml;
+
+    @Setup
+    public void setUp() throws IOException {
+        // El lector de cuerpos no interviene: se analiza contenido ya extraído
+        analyzer = new NetflixMessageAnalyzerImpl(null);
+        householdHtml = readFixture("fixtures/netflix-household.html");
+
+        if (!analyzer.findNetflixUrlInContent(householdHtml)
+                .equals(LegacyNetflixContentMatcher.findNetflixUrlInContent(householdHtml))) {
+            throw new IllegalStateException("Las dos implementaciones no coinciden");
+        }
+    }
+
+    @Benchmark
+    public void legacyClassify(Blackhole blackhole) {
+        blackhole.consume(LegacyNetflixContentMatcher.isHomeUpdateContent(householdHtml));
+        blackhole.consume(LegacyNetflixContentMatcher.findNetflixUrlInContent(householdHtml));
+        blackhole.consume(LegacyNetflixContentMatcher.isTemporaryCodeContent(householdHtml));
+        blackhole.consume(LegacyNetflixContentMatcher.findTemporaryCodeUrl(householdHtml));
+    }
+
+    @Benchmark
+    public void singleScanClassify(Blackhole blackhole) {
+        NetflixContentScan scan = analyzer.scanContent(householdHtml);
+        blackhole.consume(analyzer.isHomeUpdateContent(scan));
+        blackhole.consume(analyzer.findNetflixUrlInContent(scan));
+        blackhole.consume(analyzer.isTemporaryCodeContent(scan));
+        blackhole.consume(analyzer.findTemporaryCodeUrl(scan));
+    }
+
+    @Benchmark
+    public NetflixContentScan scanOnly() {
+        return analyzer.scanContent(householdHtml);
+    }
+
+    private static String readFixture(String name) throws IOException {
+        try (InputStream in = NetflixContentBenchmark.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Fixture no encontrado: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
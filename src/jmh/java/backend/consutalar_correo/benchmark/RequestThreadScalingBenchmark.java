@@ -0,0 +1,122 @@
+package backend.consutalar_correo.benchmark;
+
+import backend.consutalar_correo.services.serviceImpl.MessageBodyReaderImpl;
+import backend.consutalar_correo.services.serviceImpl.NetflixMessageAnalyzerImpl;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Prueba de carga del modelo de hilos de las peticiones: N peticiones simultáneas que validan un
+// enlace contra un servidor local lento (simula netflix.com), atendidas por un pool de plataforma
+// del tamaño por defecto de Tomcat (200) o por un hilo virtual por petición.
+//   mvn -Pbenchmark test-compile exec:exec -Djmh.args="RequestThreadScalingBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RequestThreadScalingBenchmark {
+
+    private static final int TOMCAT_DEFAULT_MAX_THREADS = 200;
+
+    @Param({"100", "400", "800"})
+    public int concurrentRequests;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000"})
+    public int upstreamLatencyMs;
+
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    private NetflixMessageAnalyzerImpl analyzer;
+    private String baseUrl;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] page = readPage();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(upstreamLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, page.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(page);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/account/update-primary-location?nftoken=";
+
+        analyzer = new NetflixMessageAnalyzerImpl(new MessageBodyReaderImpl());
+        requestExecutor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_DEFAULT_MAX_THREADS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        server.stop(0);
+    }
+
+    // Tiempo hasta completar todas las peticiones del lote
+    @Benchmark
+    public int validateConcurrently() throws Exception {
+        List<Future<Boolean>> responses = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            // URL distinta por petición para medir el modelo de hilos y no la coalescencia
+            String url = baseUrl + sequence.incrementAndGet();
+            responses.add(requestExecutor.submit(() -> analyzer.validateNetflixHomeLinkOptimized(url)));
+        }
+
+        int confirmed = 0;
+        for (Future<Boolean> response : responses) {
+            if (response.get()) {
+                confirmed++;
+            }
+        }
+        if (confirmed != concurrentRequests) {
+            throw new IllegalStateException("Validaciones fallidas: " + (concurrentRequests - confirmed));
+        }
+        return confirmed;
+    }
+
+    private static byte[] readPage() throws IOException {
+        try (InputStream in = RequestThreadScalingBenchmark.class.getClassLoader()
+                .getResourceAsStream("fixtures/pages/household-confirmation.html")) {
+            if (in == null) {
+                throw new IOException("Fixture no encontrado: fixtures/pages/household-confirmation.html");
+            }
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package backend.consutalar_correo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    @Value("${app.imap.executor.core-size:8}")
+    private int coreSize;
+
+    @Value("${app.imap.executor.max-size:32}")
+    private int maxSize;
+
+    @Value("${app.imap.executor.queue-capacity:200}")
+    private int queueCapacity;
+
+    // Jakarta Mail hace la E/S del socket dentro de bloques synchronized: en JDK 21 un hilo virtual
+    // ahí bloquea su hilo portador. Solo activar con JDK 24+ (JEP 491)
+    @Value("${app.imap.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    // Hilos para el trabajo IMAP bloqueante; los hilos de Tomcat quedan libres mientras tanto
+    @Bean(name = "imapTaskExecutor")
+    public AsyncTaskExecutor imapTaskExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("imap-task-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(maxSize);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("imap-task-");
+        // Con la cola llena, el propio hilo de la petición hace el trabajo (contrapresión)
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
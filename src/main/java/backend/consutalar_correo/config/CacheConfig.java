@@ -0,0 +1,58 @@
+package backend.consutalar_correo.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class CacheConfig {
+
+    public static final String EMAIL_CREDENTIALS = "emailCredentials";
+    public static final String ENCRYPTION = "encryptionCache";
+    public static final String CONNECTION = "connectionCache";
+
+    @Value("${app.cache.email-credentials.max-size:1000}")
+    private long credentialsMaxSize;
+
+    @Value("${app.cache.email-credentials.ttl-ms:600000}")
+    private long credentialsTtlMs;
+
+    @Value("${app.cache.encryption.max-size:1000}")
+    private long encryptionMaxSize;
+
+    @Value("${app.cache.encryption.ttl-ms:600000}")
+    private long encryptionTtlMs;
+
+    @Value("${app.cache.connection.max-size:500}")
+    private long connectionMaxSize;
+
+    @Value("${app.cache.connection.ttl-ms:60000}")
+    private long connectionTtlMs;
+
+    // Cada cache con su propio tamaño máximo y expiración; recordStats publica aciertos/fallos en Actuator
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(EMAIL_CREDENTIALS, buildCache(credentialsMaxSize, credentialsTtlMs));
+        cacheManager.registerCustomCache(ENCRYPTION, buildCache(encryptionMaxSize, encryptionTtlMs));
+        cacheManager.registerCustomCache(CONNECTION, buildCache(connectionMaxSize, connectionTtlMs));
+        // Solo existen las caches declaradas: un nombre mal escrito falla en lugar de crecer sin límite
+        cacheManager.setCacheNames(List.of());
+        return cacheManager;
+    }
+
+    private Cache<Object, Object> buildCache(long maxSize, long ttlMs) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,33 @@
+package backend.consutalar_correo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.imap.central-index")
+public class CentralInboxIndexProperties {
+    // Solo arranca si además hay buzón central configurado (mail.imap.host)
+    private boolean enabled = true;
+    // Correos que se indexan al conectar por primera vez
+    private int initialScanMessages = 200;
+    private long maxEntries = 50000;
+    private long entryTtlMs = 86400000;
+    private long idleRefreshMs = 540000;
+    private long pollIntervalMs = 30000;
+    private long reconnectDelayMs = 30000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getInitialScanMessages() { return initialScanMessages; }
+    public void setInitialScanMessages(int initialScanMessages) { this.initialScanMessages = initialScanMessages; }
+    public long getMaxEntries() { return maxEntries; }
+    public void setMaxEntries(long maxEntries) { this.maxEntries = maxEntries; }
+    public long getEntryTtlMs() { return entryTtlMs; }
+    public void setEntryTtlMs(long entryTtlMs) { this.entryTtlMs = entryTtlMs; }
+    public long getIdleRefreshMs() { return idleRefreshMs; }
+    public void setIdleRefreshMs(long idleRefreshMs) { this.idleRefreshMs = idleRefreshMs; }
+    public long getPollIntervalMs() { return pollIntervalMs; }
+    public void setPollIntervalMs(long pollIntervalMs) { this.pollIntervalMs = pollIntervalMs; }
+    public long getReconnectDelayMs() { return reconnectDelayMs; }
+    public void setReconnectDelayMs(long reconnectDelayMs) { this.reconnectDelayMs = reconnectDelayMs; }
+}
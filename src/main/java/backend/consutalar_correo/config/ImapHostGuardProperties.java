@@ -0,0 +1,52 @@
+package backend.consutalar_correo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.imap.host-guard")
+public class ImapHostGuardProperties {
+    // Límite adaptativo (AIMD) de operaciones IMAP simultáneas por servidor
+    private int initialLimit = 8;
+    private int minLimit = 1;
+    private int maxLimit = 32;
+    // Al detectar lentitud o fallo el límite se multiplica por este factor
+    private double backoffRatio = 0.7;
+    private long latencyThresholdMs = 4000;
+    private long acquireTimeoutMs = 2000;
+    // Circuit breaker por servidor: deja de intentarlo mientras el proveedor está caído
+    private float failureRateThreshold = 50;
+    private long slowCallDurationMs = 6000;
+    private float slowCallRateThreshold = 80;
+    private int slidingWindowSize = 20;
+    private int minimumCalls = 10;
+    private long openStateWaitMs = 30000;
+    private int halfOpenCalls = 3;
+
+    public int getInitialLimit() { return initialLimit; }
+    public void setInitialLimit(int initialLimit) { this.initialLimit = initialLimit; }
+    public int getMinLimit() { return minLimit; }
+    public void setMinLimit(int minLimit) { this.minLimit = minLimit; }
+    public int getMaxLimit() { return maxLimit; }
+    public void setMaxLimit(int maxLimit) { this.maxLimit = maxLimit; }
+    public double getBackoffRatio() { return backoffRatio; }
+    public void setBackoffRatio(double backoffRatio) { this.backoffRatio = backoffRatio; }
+    public long getLatencyThresholdMs() { return latencyThresholdMs; }
+    public void setLatencyThresholdMs(long latencyThresholdMs) { this.latencyThresholdMs = latencyThresholdMs; }
+    public long getAcquireTimeoutMs() { return acquireTimeoutMs; }
+    public void setAcquireTimeoutMs(long acquireTimeoutMs) { this.acquireTimeoutMs = acquireTimeoutMs; }
+    public float getFailureRateThreshold() { return failureRateThreshold; }
+    public void setFailureRateThreshold(float failureRateThreshold) { this.failureRateThreshold = failureRateThreshold; }
+    public long getSlowCallDurationMs() { return slowCallDurationMs; }
+    public void setSlowCallDurationMs(long slowCallDurationMs) { this.slowCallDurationMs = slowCallDurationMs; }
+    public float getSlowCallRateThreshold() { return slowCallRateThreshold; }
+    public void setSlowCallRateThreshold(float slowCallRateThreshold) { this.slowCallRateThreshold = slowCallRateThreshold; }
+    public int getSlidingWindowSize() { return slidingWindowSize; }
+    public void setSlidingWindowSize(int slidingWindowSize) { this.slidingWindowSize = slidingWindowSize; }
+    public int getMinimumCalls() { return minimumCalls; }
+    public void setMinimumCalls(int minimumCalls) { this.minimumCalls = minimumCalls; }
+    public long getOpenStateWaitMs() { return openStateWaitMs; }
+    public void setOpenStateWaitMs(long openStateWaitMs) { this.openStateWaitMs = openStateWaitMs; }
+    public int getHalfOpenCalls() { return halfOpenCalls; }
+    public void setHalfOpenCalls(int halfOpenCalls) { this.halfOpenCalls = halfOpenCalls; }
+}
@@ -0,0 +1,40 @@
+package backend.consutalar_correo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.imap.pool")
+public class ImapPoolProperties {
+    // Conexiones abiertas que se conservan por buzón entre peticiones
+    private int maxIdlePerMailbox = 2;
+    // Conexiones prestadas simultáneamente por buzón
+    private int maxActivePerMailbox = 3;
+    private long borrowTimeoutMs = 5000;
+    private long idleTimeoutMs = 300000;
+    private long evictionIntervalMs = 60000;
+    private int connectionTimeoutMs = 5000;
+    private int readTimeoutMs = 8000;
+    private int writeTimeoutMs = 5000;
+    // COMPRESS=DEFLATE en servidores que lo anuncian (detectado al verificar las credenciales)
+    private boolean compressWhenSupported = true;
+
+    public int getMaxIdlePerMailbox() { return maxIdlePerMailbox; }
+    public void setMaxIdlePerMailbox(int maxIdlePerMailbox) { this.maxIdlePerMailbox = maxIdlePerMailbox; }
+    public int getMaxActivePerMailbox() { return maxActivePerMailbox; }
+    public void setMaxActivePerMailbox(int maxActivePerMailbox) { this.maxActivePerMailbox = maxActivePerMailbox; }
+    public long getBorrowTimeoutMs() { return borrowTimeoutMs; }
+    public void setBorrowTimeoutMs(long borrowTimeoutMs) { this.borrowTimeoutMs = borrowTimeoutMs; }
+    public long getIdleTimeoutMs() { return idleTimeoutMs; }
+    public void setIdleTimeoutMs(long idleTimeoutMs) { this.idleTimeoutMs = idleTimeoutMs; }
+    public long getEvictionIntervalMs() { return evictionIntervalMs; }
+    public void setEvictionIntervalMs(long evictionIntervalMs) { this.evictionIntervalMs = evictionIntervalMs; }
+    public int getConnectionTimeoutMs() { return connectionTimeoutMs; }
+    public void setConnectionTimeoutMs(int connectionTimeoutMs) { this.connectionTimeoutMs = connectionTimeoutMs; }
+    public int getReadTimeoutMs() { return readTimeoutMs; }
+    public void setReadTimeoutMs(int readTimeoutMs) { this.readTimeoutMs = readTimeoutMs; }
+    public int getWriteTimeoutMs() { return writeTimeoutMs; }
+    public void setWriteTimeoutMs(int writeTimeoutMs) { this.writeTimeoutMs = writeTimeoutMs; }
+    public boolean isCompressWhenSupported() { return compressWhenSupported; }
+    public void setCompressWhenSupported(boolean compressWhenSupported) { this.compressWhenSupported = compressWhenSupported; }
+}
@@ -12,6 +12,7 @@ public class ImapProperties {
     private String password;
     private String folder;
     private int lastMessagesToScan = 50;
+    private long maxBytesToScan = 5 * 1024 * 1024;
 
     public String getHost() { return host; }
     public void setHost(String host) { this.host = host; }
@@ -27,4 +28,6 @@ public class ImapProperties {
     public void setFolder(String folder) { this.folder = folder; }
     public int getLastMessagesToScan() { return lastMessagesToScan; }
     public void setLastMessagesToScan(int lastMessagesToScan) { this.lastMessagesToScan = lastMessagesToScan; }
+    public long getMaxBytesToScan() { return maxBytesToScan; }
+    public void setMaxBytesToScan(long maxBytesToScan) { this.maxBytesToScan = maxBytesToScan; }
 }
@@ -0,0 +1,27 @@
+package backend.consutalar_correo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.imap.watcher")
+public class MailboxWatcherProperties {
+    private boolean enabled = false;
+    private int maxMailboxes = 100;
+    // Los servidores cortan IDLE a los ~29 min; se renueva antes
+    private long idleRefreshMs = 540000;
+    // Intervalo de sondeo para servidores sin IDLE
+    private long pollIntervalMs = 30000;
+    private long reconnectDelayMs = 30000;
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public int getMaxMailboxes() { return maxMailboxes; }
+    public void setMaxMailboxes(int maxMailboxes) { this.maxMailboxes = maxMailboxes; }
+    public long getIdleRefreshMs() { return idleRefreshMs; }
+    public void setIdleRefreshMs(long idleRefreshMs) { this.idleRefreshMs = idleRefreshMs; }
+    public long getPollIntervalMs() { return pollIntervalMs; }
+    public void setPollIntervalMs(long pollIntervalMs) { this.pollIntervalMs = pollIntervalMs; }
+    public long getReconnectDelayMs() { return reconnectDelayMs; }
+    public void setReconnectDelayMs(long reconnectDelayMs) { this.reconnectDelayMs = reconnectDelayMs; }
+}
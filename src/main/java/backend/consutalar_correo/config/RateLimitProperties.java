@@ -0,0 +1,52 @@
+package backend.consutalar_correo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+    // Un bucket por email, por IP de cliente y por proveedor (dominio del email)
+    private Bucket email = new Bucket(5, 60000);
+    private Bucket clientIp = new Bucket(30, 60000);
+    private Bucket provider = new Bucket(300, 60000);
+    // Lotes y validaciones tienen su propio bucket por IP y por email respectivamente
+    private Bucket batch = new Bucket(2, 60000);
+    private Bucket validation = new Bucket(10, 60000);
+    // Las claves sin uso se descartan; nunca antes de que su bucket se haya vuelto a llenar
+    private long idleEvictMs = 600000;
+    private long maxKeysPerScope = 100000;
+
+    public Bucket getEmail() { return email; }
+    public void setEmail(Bucket email) { this.email = email; }
+    public Bucket getClientIp() { return clientIp; }
+    public void setClientIp(Bucket clientIp) { this.clientIp = clientIp; }
+    public Bucket getProvider() { return provider; }
+    public void setProvider(Bucket provider) { this.provider = provider; }
+    public Bucket getBatch() { return batch; }
+    public void setBatch(Bucket batch) { this.batch = batch; }
+    public Bucket getValidation() { return validation; }
+    public void setValidation(Bucket validation) { this.validation = validation; }
+    public long getIdleEvictMs() { return idleEvictMs; }
+    public void setIdleEvictMs(long idleEvictMs) { this.idleEvictMs = idleEvictMs; }
+    public long getMaxKeysPerScope() { return maxKeysPerScope; }
+    public void setMaxKeysPerScope(long maxKeysPerScope) { this.maxKeysPerScope = maxKeysPerScope; }
+
+    public static class Bucket {
+        // capacity solicitudes de ráfaga, repuestas de forma continua a lo largo de periodMs
+        private int capacity;
+        private long periodMs;
+
+        public Bucket() {}
+
+        public Bucket(int capacity, long periodMs) {
+            this.capacity = capacity;
+            this.periodMs = periodMs;
+        }
+
+        public int getCapacity() { return capacity; }
+        public void setCapacity(int capacity) { this.capacity = capacity; }
+        public long getPeriodMs() { return periodMs; }
+        public void setPeriodMs(long periodMs) { this.periodMs = periodMs; }
+    }
+}
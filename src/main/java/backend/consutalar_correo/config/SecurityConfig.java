@@ -2,6 +2,7 @@ package backend.consutalar_correo.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 
@@ -16,8 +17,12 @@ public class SecurityConfig {
                         .requestMatchers("/api/credentials/**").permitAll() // Deja público este endpoint
                         .requestMatchers("/api/netflix/**").permitAll()
                         .requestMatchers("/api/health").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/info").permitAll()
+                        // Métricas solo para el scraper (usuario de spring.security.user.*)
+                        .requestMatchers("/actuator/metrics/**", "/actuator/prometheus").hasRole("METRICS")
                         .anyRequest().authenticated() // El resto pide autenticación
-                );
+                )
+                .httpBasic(Customizer.withDefaults());
 
         return http.build();
     }
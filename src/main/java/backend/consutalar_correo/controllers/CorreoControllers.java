@@ -5,6 +5,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/netflix/central")
 @CrossOrigin(origins = "*")
@@ -17,13 +19,14 @@ public class CorreoControllers {
     }
 
     @PostMapping("/actualizar-hogar")
-    public ResponseEntity<String> actualizarHogar(@RequestBody String correo) {
-        String enlace = service.findNetflixUpdateHomeLinkFor(correo);
-        if (enlace != null) {
-            return ResponseEntity.ok(enlace);
-        } else {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body("No se encontró enlace para el correo ingresado.");
-        }
+    public CompletableFuture<ResponseEntity<String>> actualizarHogar(@RequestBody String correo) {
+        return service.findNetflixUpdateHomeLinkForAsync(correo).thenApply(enlace -> {
+            if (enlace != null) {
+                return ResponseEntity.ok(enlace);
+            } else {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("No se encontró enlace para el correo ingresado.");
+            }
+        });
     }
 }
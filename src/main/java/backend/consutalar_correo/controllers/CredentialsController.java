@@ -1,20 +1,29 @@
 package backend.consutalar_correo.controllers;
 
+import backend.consutalar_correo.dtos.CredentialsImportResponse;
+import backend.consutalar_correo.dtos.CredentialsPageResponse;
 import backend.consutalar_correo.dtos.CredentialsRequest;
 import backend.consutalar_correo.dtos.CredentialsResponse;
 import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.services.CredentialsImportService;
+import backend.consutalar_correo.services.CredentialsVerificationService;
 import backend.consutalar_correo.services.EmailCredentialsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/credentials")
@@ -25,6 +34,12 @@ public class CredentialsController {
     @Autowired
     private EmailCredentialsService emailCredentialsService;
 
+    @Autowired
+    private CredentialsImportService credentialsImportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping
     public ResponseEntity<?> saveCredentials(@Valid @RequestBody CredentialsRequest request) {
         logger.info("Guardando credenciales para email: {}", request.getEmail());
@@ -48,17 +63,58 @@ public class CredentialsController {
         }
     }
 
+    // Alta masiva: cada fila se valida por separado y la respuesta indica el resultado de cada una
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importCredentials(@RequestBody List<CredentialsRequest> rows) {
+        logger.info("Importando credenciales desde JSON: {} filas", rows.size());
+        return runImport(() -> credentialsImportService.importCredentials(rows));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<?> importCredentialsCsv(@RequestBody String csv) {
+        logger.info("Importando credenciales desde CSV");
+        return runImport(() -> credentialsImportService.importCsv(csv));
+    }
+
+    private ResponseEntity<?> runImport(Supplier<CredentialsImportResponse> importer) {
+        try {
+            return ResponseEntity.ok(importer.get());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Importación rechazada: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error importando credenciales: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error importando credenciales: " + e.getMessage());
+        }
+    }
+
+    // Contrato original: la lista completa, ahora proyectada a DTO sin cargar entidades
     @GetMapping
     public ResponseEntity<List<CredentialsResponse>> getAllCredentials() {
         logger.info("Obteniendo todas las credenciales");
 
         try {
-            List<EmailCredentials> credentials = emailCredentialsService.getAllCredentials();
-            List<CredentialsResponse> responses = credentials.stream()
-                    .map(this::mapToResponse)
-                    .collect(Collectors.toList());
+            return ResponseEntity.ok(emailCredentialsService.getAllCredentials());
+
+        } catch (Exception e) {
+            logger.error("Error obteniendo credenciales: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 
-            return ResponseEntity.ok(responses);
+    // Con "after" pagina por cursor (id del último elemento recibido); sin él, por número de página
+    @GetMapping("/page")
+    public ResponseEntity<CredentialsPageResponse> getCredentials(@RequestParam(defaultValue = "0") int page,
+                                                                  @RequestParam(defaultValue = "50") int size,
+                                                                  @RequestParam(required = false) Long after) {
+        logger.info("Obteniendo credenciales (page={}, size={}, after={})", page, size, after);
+
+        try {
+            CredentialsPageResponse response = after != null
+                    ? emailCredentialsService.getCredentialsAfter(after, size)
+                    : emailCredentialsService.getCredentialsPage(page, size);
+            return ResponseEntity.ok(response);
 
         } catch (Exception e) {
             logger.error("Error obteniendo credenciales: {}", e.getMessage());
@@ -66,6 +122,32 @@ public class CredentialsController {
         }
     }
 
+    // OPTIMIZACIÓN: Exportación completa en NDJSON escribiendo fila a fila, sin construir la lista en memoria
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCredentials() {
+        logger.info("Exportando todas las credenciales");
+
+        StreamingResponseBody body = out -> {
+            try {
+                emailCredentialsService.exportCredentials(credentials -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(credentials));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.flush();
+            } catch (UncheckedIOException e) {
+                // Normalmente el cliente cortó la descarga
+                logger.warn("Exportación de credenciales interrumpida: {}", e.getMessage());
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @GetMapping("/{email}")
     public ResponseEntity<?> getCredentialsByEmail(@PathVariable String email) {
         logger.info("Obteniendo credenciales para email: {}", email);
@@ -128,10 +210,17 @@ public class CredentialsController {
         logger.info("Validando credenciales para: {}", email);
 
         try {
-            boolean isValid = emailCredentialsService.validateCredentials(email);
+            String status = emailCredentialsService.validateCredentials(email);
 
-            if (isValid) {
+            if (CredentialsVerificationService.VALID.equals(status)) {
                 return ResponseEntity.ok("Credenciales válidas");
+            } else if (CredentialsVerificationService.PENDING.equals(status)) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body("Verificación de credenciales en curso");
+            } else if (CredentialsVerificationService.ERROR.equals(status)) {
+                // Fallo transitorio del servidor IMAP: no significa que la contraseña sea incorrecta
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body("No se pudo verificar las credenciales, se reintentará en unos minutos");
             } else {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body("Credenciales inválidas o no encontradas");
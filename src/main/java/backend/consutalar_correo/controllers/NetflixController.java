@@ -1,18 +1,34 @@
 package backend.consutalar_correo.controllers;
 
+import backend.consutalar_correo.dtos.BatchExtractionRequest;
 import backend.consutalar_correo.dtos.EmailRequest;
 import backend.consutalar_correo.dtos.NetflixLinkResponse;
+import backend.consutalar_correo.dtos.RateLimitScope;
+import backend.consutalar_correo.dtos.SubscriptionRequest;
+import backend.consutalar_correo.services.BatchExtractionService;
 import backend.consutalar_correo.services.EmailProcessorService;
-import io.github.resilience4j.ratelimiter.RequestNotPermitted;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
+import backend.consutalar_correo.services.ExtractionSubscriptionService;
+import backend.consutalar_correo.services.KeyedRateLimiter;
+import backend.consutalar_correo.services.KeyedRateLimiter.Key;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 @RestController
 @RequestMapping("/api/netflix")
@@ -23,64 +39,174 @@ public class NetflixController {
     @Autowired
     private EmailProcessorService emailProcessorService;
 
-    @RateLimiter(name = "netflix-service", fallbackMethod = "rateLimitFallback")
-    @PostMapping("/extract-link")
-    public ResponseEntity<NetflixLinkResponse> extractNetflixLink(@Valid @RequestBody EmailRequest request) {
-        logger.info("Solicitud para extraer enlace de Netflix del email: {}", request.getEmail());
+    @Autowired
+    private BatchExtractionService batchExtractionService;
 
-        try {
-            Optional<String> netflixLink = emailProcessorService.extractNetflixHomeLink(request.getEmail());
+    @Autowired
+    private ExtractionSubscriptionService extractionSubscriptionService;
 
-            if (netflixLink.isPresent()) {
-                logger.info("Enlace extraído exitosamente para: {}", request.getEmail());
-                return ResponseEntity.ok(
-                        new NetflixLinkResponse(true, netflixLink.get(), request.getEmail())
-                );
-            } else {
-                logger.warn("No se encontró enlace de Netflix para: {}", request.getEmail());
-                return ResponseEntity.ok(
-                        new NetflixLinkResponse(false, "No se encontró enlace de actualización de hogar.")
-                );
-            }
+    @Autowired
+    private KeyedRateLimiter keyedRateLimiter;
 
-        } catch (Exception e) {
-            logger.error("Error procesando solicitud para {}: {}", request.getEmail(), e.getMessage());
-            return ResponseEntity.status(500).body(
-                    new NetflixLinkResponse(false, "Error interno del servidor: " + e.getMessage())
-            );
+    @Value("${app.batch.timeout-ms:300000}")
+    private long batchTimeoutMs;
+
+    // OPTIMIZACIÓN: Respuesta asíncrona; el hilo de Tomcat se libera mientras se lee el buzón y se valida el enlace
+    @PostMapping("/extract-link")
+    public CompletableFuture<ResponseEntity<NetflixLinkResponse>> extractNetflixLink(@Valid @RequestBody EmailRequest request,
+                                                                                    HttpServletRequest httpRequest) {
+        long retryAfterMs = keyedRateLimiter.tryAcquire(extractionKeys(request.getEmail(), httpRequest));
+        if (retryAfterMs > 0) {
+            return rateLimitFallback(request, retryAfterMs);
         }
+        logger.info("Solicitud para extraer enlace de Netflix del email: {}", request.getEmail());
+
+        return emailProcessorService.extractNetflixHomeLinkAsync(request.getEmail())
+                .thenApply(netflixLink -> {
+                    if (netflixLink.isPresent()) {
+                        logger.info("Enlace extraído exitosamente para: {}", request.getEmail());
+                        return ResponseEntity.ok(
+                                new NetflixLinkResponse(true, netflixLink.get(), request.getEmail())
+                        );
+                    } else {
+                        logger.warn("No se encontró enlace de Netflix para: {}", request.getEmail());
+                        return ResponseEntity.ok(
+                                new NetflixLinkResponse(false, "No se encontró enlace de actualización de hogar.")
+                        );
+                    }
+                })
+                .exceptionally(e -> {
+                    logger.error("Error procesando solicitud para {}: {}", request.getEmail(), e.getMessage());
+                    return ResponseEntity.status(500).body(
+                            new NetflixLinkResponse(false, "Error interno del servidor: " + e.getMessage())
+                    );
+                });
     }
 
-    @RateLimiter(name = "netflix-service", fallbackMethod = "rateLimitFallbackCode")
     @PostMapping("/extract-code")
-    public ResponseEntity<NetflixLinkResponse> extractTemporaryCode(@Valid @RequestBody EmailRequest request) {
+    public CompletableFuture<ResponseEntity<NetflixLinkResponse>> extractTemporaryCode(@Valid @RequestBody EmailRequest request,
+                                                                                      HttpServletRequest httpRequest) {
+        long retryAfterMs = keyedRateLimiter.tryAcquire(extractionKeys(request.getEmail(), httpRequest));
+        if (retryAfterMs > 0) {
+            return rateLimitFallbackCode(request, retryAfterMs);
+        }
         logger.info("Solicitud para extraer código temporal del email: {}", request.getEmail());
 
-        try {
-            Optional<String> temporaryCode = emailProcessorService.extractTemporaryCode(request.getEmail());
+        return emailProcessorService.extractTemporaryCodeAsync(request.getEmail())
+                .thenApply(temporaryCode -> {
+                    if (temporaryCode.isPresent()) {
+                        logger.info("Código temporal extraído exitosamente para: {}", request.getEmail());
+                        NetflixLinkResponse response = new NetflixLinkResponse(true, temporaryCode.get(), request.getEmail(), true);
+                        return ResponseEntity.ok(response);
+                    } else {
+                        logger.warn("No se encontró código temporal para: {}", request.getEmail());
+                        return ResponseEntity.ok(
+                                new NetflixLinkResponse(false, "No se encontró código temporal")
+                        );
+                    }
+                })
+                .exceptionally(e -> {
+                    logger.error("Error procesando solicitud de código temporal para {}: {}", request.getEmail(), e.getMessage());
+                    return ResponseEntity.status(500).body(
+                            new NetflixLinkResponse(false, "Error interno del servidor: " + e.getMessage())
+                    );
+                });
+    }
 
-            if (temporaryCode.isPresent()) {
-                logger.info("Código temporal extraído exitosamente para: {}", request.getEmail());
-                NetflixLinkResponse response = new NetflixLinkResponse(true, temporaryCode.get(), request.getEmail(), true);
-                return ResponseEntity.ok(response);
-            } else {
-                logger.warn("No se encontró código temporal para: {}", request.getEmail());
-                return ResponseEntity.ok(
-                        new NetflixLinkResponse(false, "No se encontró código temporal")
-                );
-            }
+    // Enlace y código en una sola visita al buzón, en lugar de llamar a /extract-link y /extract-code seguidos
+    @PostMapping("/extract-all")
+    public CompletableFuture<ResponseEntity<NetflixLinkResponse>> extractAll(@Valid @RequestBody EmailRequest request,
+                                                                            HttpServletRequest httpRequest) {
+        long retryAfterMs = keyedRateLimiter.tryAcquire(extractionKeys(request.getEmail(), httpRequest));
+        if (retryAfterMs > 0) {
+            return rateLimitFallbackAll(request, retryAfterMs);
+        }
+        logger.info("Solicitud para extraer enlace y código del email: {}", request.getEmail());
 
-        } catch (Exception e) {
-            logger.error("Error procesando solicitud de código temporal para {}: {}", request.getEmail(), e.getMessage());
-            return ResponseEntity.status(500).body(
-                    new NetflixLinkResponse(false, "Error interno del servidor: " + e.getMessage())
-            );
+        return emailProcessorService.extractAllAsync(request.getEmail())
+                .thenApply(result -> {
+                    if (result.isEmpty()) {
+                        logger.warn("No se encontró enlace ni código para: {}", request.getEmail());
+                    }
+                    return ResponseEntity.ok(
+                            new NetflixLinkResponse(request.getEmail(), result.getNetflixLink(), result.getTemporaryCode())
+                    );
+                })
+                .exceptionally(e -> {
+                    logger.error("Error procesando solicitud combinada para {}: {}", request.getEmail(), e.getMessage());
+                    return ResponseEntity.status(500).body(
+                            new NetflixLinkResponse(false, "Error interno del servidor: " + e.getMessage())
+                    );
+                });
+    }
+
+    // Varios buzones en una sola petición; cada resultado se envía como una línea JSON (NDJSON) al terminar
+    @PostMapping(value = "/extract-batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> extractBatch(@Valid @RequestBody BatchExtractionRequest request,
+                                                            HttpServletRequest httpRequest) {
+        // El lote consume su cupo por IP y además un permiso de cada email y de su proveedor
+        List<Key> keys = new ArrayList<>();
+        keys.add(Key.of(RateLimitScope.BATCH, httpRequest.getRemoteAddr()));
+        for (String email : request.getEmails()) {
+            keys.add(Key.of(RateLimitScope.EMAIL, email));
+            keys.add(Key.provider(email));
+        }
+        long retryAfterMs = keyedRateLimiter.tryAcquire(keys);
+        if (retryAfterMs > 0) {
+            return rateLimitFallbackBatch(request, retryAfterMs);
+        }
+        logger.info("Solicitud de lote ({}) para {} emails", request.getKind(), request.getEmails().size());
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        Lock writeLock = new ReentrantLock();
+
+        batchExtractionService.extractBatch(request.getEmails(), request.getKind(), result -> {
+                    writeLock.lock();
+                    try {
+                        emitter.send(result, MediaType.APPLICATION_JSON);
+                        emitter.send("\n", MediaType.TEXT_PLAIN);
+                    } catch (IOException | IllegalStateException e) {
+                        logger.debug("Cliente desconectado durante el lote: {}", e.getMessage());
+                    } finally {
+                        writeLock.unlock();
+                    }
+                })
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        logger.error("Error procesando lote: {}", error.getMessage());
+                        emitter.completeWithError(error);
+                    } else {
+                        emitter.complete();
+                    }
+                });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+
+    // Una sola conexión abierta en lugar de sondear /extract-link y /extract-code
+    @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@Valid @ModelAttribute SubscriptionRequest request,
+                                                HttpServletRequest httpRequest) {
+        // Una suscripción de un buzón sin vigilancia sondea IMAP periódicamente: cuenta como una extracción
+        long retryAfterMs = keyedRateLimiter.tryAcquire(extractionKeys(request.getEmail(), httpRequest));
+        if (retryAfterMs > 0) {
+            return rateLimitFallbackSubscribe(request, retryAfterMs);
         }
+        logger.info("Suscripción SSE ({}) para email: {}", request.getKind(), request.getEmail());
+        return ResponseEntity.ok(extractionSubscriptionService.subscribe(request.getEmail(), request.getKind()));
     }
 
-    @RateLimiter(name = "netflix-validation", fallbackMethod = "rateLimitFallbackValidation")
     @PostMapping("/validate-connection")
-    public ResponseEntity<NetflixLinkResponse> validateConnection(@Valid @RequestBody EmailRequest request) {
+    public ResponseEntity<NetflixLinkResponse> validateConnection(@Valid @RequestBody EmailRequest request,
+                                                                  HttpServletRequest httpRequest) {
+        long retryAfterMs = keyedRateLimiter.tryAcquire(List.of(
+                Key.of(RateLimitScope.VALIDATION, request.getEmail()),
+                Key.of(RateLimitScope.CLIENT_IP, httpRequest.getRemoteAddr())));
+        if (retryAfterMs > 0) {
+            return rateLimitFallbackValidation(request, retryAfterMs);
+        }
         logger.info("Validando conexión para email: {}", request.getEmail());
 
         try {
@@ -105,24 +231,76 @@ public class NetflixController {
     }
 
     // Fallback methods para rate limiting
-    public ResponseEntity<NetflixLinkResponse> rateLimitFallback(EmailRequest request, RequestNotPermitted ex) {
+    private CompletableFuture<ResponseEntity<NetflixLinkResponse>> rateLimitFallback(EmailRequest request, long retryAfterMs) {
         logger.warn("Rate limit excedido para extraer enlace: {}", request.getEmail());
-        return ResponseEntity.status(429).body(
-                new NetflixLinkResponse(false, "Límite de solicitudes excedido. Máximo 5 por minuto. Intenta nuevamente en unos minutos.")
-        );
+        return CompletableFuture.completedFuture(ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfterMs))
+                .body(new NetflixLinkResponse(false, "Límite de solicitudes excedido. Máximo 5 por minuto. Intenta nuevamente en unos minutos.")));
     }
 
-    public ResponseEntity<NetflixLinkResponse> rateLimitFallbackCode(EmailRequest request, RequestNotPermitted ex) {
+    private CompletableFuture<ResponseEntity<NetflixLinkResponse>> rateLimitFallbackCode(EmailRequest request, long retryAfterMs) {
         logger.warn("Rate limit excedido para extraer código: {}", request.getEmail());
-        return ResponseEntity.status(429).body(
-                new NetflixLinkResponse(false, "Límite de solicitudes excedido. Máximo 5 por minuto. Intenta nuevamente en unos minutos.")
-        );
+        return CompletableFuture.completedFuture(ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfterMs))
+                .body(new NetflixLinkResponse(false, "Límite de solicitudes excedido. Máximo 5 por minuto. Intenta nuevamente en unos minutos.")));
     }
 
-    public ResponseEntity<NetflixLinkResponse> rateLimitFallbackValidation(EmailRequest request, RequestNotPermitted ex) {
+    private CompletableFuture<ResponseEntity<NetflixLinkResponse>> rateLimitFallbackAll(EmailRequest request, long retryAfterMs) {
+        logger.warn("Rate limit excedido para extraer enlace y código: {}", request.getEmail());
+        return CompletableFuture.completedFuture(ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfterMs))
+                .body(new NetflixLinkResponse(false, "Límite de solicitudes excedido. Máximo 5 por minuto. Intenta nuevamente en unos minutos.")));
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> rateLimitFallbackBatch(BatchExtractionRequest request, long retryAfterMs) {
+        logger.warn("Rate limit excedido para lote de {} emails", request.getEmails().size());
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        try {
+            emitter.send(new NetflixLinkResponse(false, "Límite de lotes excedido. Máximo 2 por minuto. Intenta nuevamente en unos minutos."),
+                    MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfterMs))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+
+    private ResponseEntity<SseEmitter> rateLimitFallbackSubscribe(SubscriptionRequest request, long retryAfterMs) {
+        logger.warn("Rate limit excedido para suscripción: {}", request.getEmail());
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event().name("error").data(
+                    new NetflixLinkResponse(false, "Límite de solicitudes excedido. Máximo 5 por minuto. Intenta nuevamente en unos minutos.")));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfterMs))
+                .body(emitter);
+    }
+
+    private ResponseEntity<NetflixLinkResponse> rateLimitFallbackValidation(EmailRequest request, long retryAfterMs) {
         logger.warn("Rate limit excedido para validación: {}", request.getEmail());
-        return ResponseEntity.status(429).body(
-                new NetflixLinkResponse(false, "Límite de validaciones excedido. Máximo 10 por minuto. Intenta nuevamente en unos minutos.")
-        );
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfterMs))
+                .body(new NetflixLinkResponse(false, "Límite de validaciones excedido. Máximo 10 por minuto. Intenta nuevamente en unos minutos."));
+    }
+
+    // Claves de una extracción individual: el email, la IP del cliente y el proveedor del email
+    private List<Key> extractionKeys(String email, HttpServletRequest httpRequest) {
+        return List.of(
+                Key.of(RateLimitScope.EMAIL, email),
+                Key.of(RateLimitScope.CLIENT_IP, httpRequest.getRemoteAddr()),
+                Key.provider(email));
+    }
+
+    // Retry-After se expresa en segundos enteros; se redondea hacia arriba para no reintentar antes de tiempo
+    private String retryAfterSeconds(long retryAfterMs) {
+        return String.valueOf(Math.max(1, (retryAfterMs + 999) / 1000));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package backend.consutalar_correo.dtos;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class BatchExtractionRequest {
+
+    @NotEmpty(message = "La lista de emails es obligatoria")
+    @Size(max = 100, message = "Máximo 100 emails por lote")
+    private List<@NotBlank @Email(message = "El formato del email no es válido") String> emails;
+
+    // LINK, CODE o BOTH
+    @NotBlank(message = "El tipo es obligatorio")
+    @Pattern(regexp = "LINK|CODE|BOTH", message = "El tipo debe ser LINK, CODE o BOTH")
+    private String kind;
+
+    public BatchExtractionRequest() {}
+
+    public BatchExtractionRequest(List<String> emails, String kind) {
+        this.emails = emails;
+        this.kind = kind;
+    }
+
+    public List<String> getEmails() {
+        return emails;
+    }
+
+    public void setEmails(List<String> emails) {
+        this.emails = emails;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+}
@@ -0,0 +1,46 @@
+package backend.consutalar_correo.dtos;
+
+import java.util.List;
+
+public class CredentialsImportResponse {
+
+    private int total;
+    private int created;
+    private int updated;
+    private int failed;
+    private long elapsedMs;
+    private List<CredentialsImportResult> results;
+
+    public CredentialsImportResponse() {}
+
+    public CredentialsImportResponse(List<CredentialsImportResult> results, long elapsedMs) {
+        this.results = results;
+        this.elapsedMs = elapsedMs;
+        this.total = results.size();
+        for (CredentialsImportResult result : results) {
+            switch (result.getStatus()) {
+                case CredentialsImportResult.CREATED -> created++;
+                case CredentialsImportResult.UPDATED -> updated++;
+                default -> failed++;
+            }
+        }
+    }
+
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+
+    public int getCreated() { return created; }
+    public void setCreated(int created) { this.created = created; }
+
+    public int getUpdated() { return updated; }
+    public void setUpdated(int updated) { this.updated = updated; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public List<CredentialsImportResult> getResults() { return results; }
+    public void setResults(List<CredentialsImportResult> results) { this.results = results; }
+}
@@ -0,0 +1,38 @@
+package backend.consutalar_correo.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Resultado de una fila de la importación masiva
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CredentialsImportResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String FAILED = "FAILED";
+
+    private int row;
+    private String email;
+    private String status;
+    private String message;
+
+    public CredentialsImportResult() {}
+
+    public CredentialsImportResult(int row, String email, String status, String message) {
+        this.row = row;
+        this.email = email;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getRow() { return row; }
+    public void setRow(int row) { this.row = row; }
+
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
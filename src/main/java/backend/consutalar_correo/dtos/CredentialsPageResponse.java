@@ -0,0 +1,57 @@
+package backend.consutalar_correo.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// Página de credenciales: por número de página (page/totalElements) o por cursor (nextCursor)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CredentialsPageResponse {
+
+    private List<CredentialsResponse> items;
+    private int size;
+    private Integer page;
+    private Integer totalPages;
+    private Long totalElements;
+    private Long nextCursor;
+
+    public CredentialsPageResponse() {}
+
+    public static CredentialsPageResponse ofPage(List<CredentialsResponse> items, int page, int size,
+                                                 int totalPages, long totalElements) {
+        CredentialsPageResponse response = new CredentialsPageResponse();
+        response.items = items;
+        response.size = size;
+        response.page = page;
+        response.totalPages = totalPages;
+        response.totalElements = totalElements;
+        return response;
+    }
+
+    // nextCursor es null cuando no quedan más resultados
+    public static CredentialsPageResponse ofCursor(List<CredentialsResponse> items, int size, Long nextCursor) {
+        CredentialsPageResponse response = new CredentialsPageResponse();
+        response.items = items;
+        response.size = size;
+        response.nextCursor = nextCursor;
+        return response;
+    }
+
+    public List<CredentialsResponse> getItems() { return items; }
+    public void setItems(List<CredentialsResponse> items) { this.items = items; }
+
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+
+    public Integer getPage() { return page; }
+    public void setPage(Integer page) { this.page = page; }
+
+    public Integer getTotalPages() { return totalPages; }
+    public void setTotalPages(Integer totalPages) { this.totalPages = totalPages; }
+
+    public Long getTotalElements() { return totalElements; }
+    public void setTotalElements(Long totalElements) { this.totalElements = totalElements; }
+
+    public Long getNextCursor() { return nextCursor; }
+    public void setNextCursor(Long nextCursor) { this.nextCursor = nextCursor; }
+}
@@ -0,0 +1,6 @@
+package backend.consutalar_correo.dtos;
+
+public enum ExtractionKind {
+    LINK,
+    CODE
+}
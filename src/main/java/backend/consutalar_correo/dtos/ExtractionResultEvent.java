@@ -0,0 +1,19 @@
+package backend.consutalar_correo.dtos;
+
+// Se publica cada vez que se guarda un enlace o código nuevo para un buzón
+public class ExtractionResultEvent {
+
+    private final String email;
+    private final ExtractionKind kind;
+    private final String value;
+
+    public ExtractionResultEvent(String email, ExtractionKind kind, String value) {
+        this.email = email;
+        this.kind = kind;
+        this.value = value;
+    }
+
+    public String getEmail() { return email; }
+    public ExtractionKind getKind() { return kind; }
+    public String getValue() { return value; }
+}
@@ -0,0 +1,34 @@
+package backend.consutalar_correo.dtos;
+
+import java.util.List;
+import java.util.Set;
+
+// Resultado de recorrer el cuerpo de un correo una sola vez: palabras clave y URLs candidatas
+public class NetflixContentScan {
+
+    private final Set<String> keywords;
+    private final List<String> urls;
+    private final List<String> hrefUrls;
+    private final List<String> codeButtonUrls;
+
+    public NetflixContentScan(Set<String> keywords, List<String> urls, List<String> hrefUrls, List<String> codeButtonUrls) {
+        this.keywords = keywords;
+        this.urls = urls;
+        this.hrefUrls = hrefUrls;
+        this.codeButtonUrls = codeButtonUrls;
+    }
+
+    public boolean contains(String keyword) { return keywords.contains(keyword); }
+
+    // Palabras clave encontradas (en minúsculas)
+    public Set<String> getKeywords() { return keywords; }
+
+    // URLs http(s) del texto, hasta el primer espacio, comilla, < > o )
+    public List<String> getUrls() { return urls; }
+
+    // Valores de href="http..." completos, hasta la comilla de cierre
+    public List<String> getHrefUrls() { return hrefUrls; }
+
+    // href cuyo enlace muestra el texto "Obtener código" / "Get code"
+    public List<String> getCodeButtonUrls() { return codeButtonUrls; }
+}
@@ -0,0 +1,23 @@
+package backend.consutalar_correo.dtos;
+
+// Enlace de hogar y código temporal obtenidos en una sola visita al buzón; cualquiera puede faltar
+public class NetflixExtractionResult {
+
+    private final String netflixLink;
+    private final String temporaryCode;
+
+    public NetflixExtractionResult(String netflixLink, String temporaryCode) {
+        this.netflixLink = netflixLink;
+        this.temporaryCode = temporaryCode;
+    }
+
+    public static NetflixExtractionResult empty() {
+        return new NetflixExtractionResult(null, null);
+    }
+
+    public String getNetflixLink() { return netflixLink; }
+
+    public String getTemporaryCode() { return temporaryCode; }
+
+    public boolean isEmpty() { return netflixLink == null && temporaryCode == null; }
+}
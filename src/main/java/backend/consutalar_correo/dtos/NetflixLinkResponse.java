@@ -32,6 +32,23 @@ public class NetflixLinkResponse {
         }
     }
 
+    // Constructor para la extracción combinada: enlace y código de una sola visita al buzón
+    public NetflixLinkResponse(String email, String netflixLink, String temporaryCode) {
+        this.success = netflixLink != null || temporaryCode != null;
+        this.email = email;
+        this.netflixLink = netflixLink;
+        this.temporaryCode = temporaryCode;
+        if (netflixLink != null && temporaryCode != null) {
+            this.message = "Se encontro enlace de actualizar hogar y codigo temporal";
+        } else if (netflixLink != null) {
+            this.message = "Se encontro enlace de actualizar hogar";
+        } else if (temporaryCode != null) {
+            this.message = "Se encontro codigo temporal";
+        } else {
+            this.message = "No se encontró enlace de actualización de hogar ni código temporal";
+        }
+    }
+
     // Constructor para error
     public NetflixLinkResponse(boolean success, String message) {
         this.success = success;
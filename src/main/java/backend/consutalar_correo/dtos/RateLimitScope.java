@@ -0,0 +1,9 @@
+package backend.consutalar_correo.dtos;
+
+public enum RateLimitScope {
+    EMAIL,
+    CLIENT_IP,
+    PROVIDER,
+    BATCH,
+    VALIDATION
+}
@@ -0,0 +1,40 @@
+package backend.consutalar_correo.dtos;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+
+// Parámetros de /api/netflix/subscribe (query string, para poder usar EventSource en el navegador)
+public class SubscriptionRequest {
+
+    @NotBlank(message = "El email es obligatorio")
+    @Email(message = "El formato del email no es válido")
+    private String email;
+
+    // LINK, CODE o BOTH
+    @Pattern(regexp = "LINK|CODE|BOTH", message = "El tipo debe ser LINK, CODE o BOTH")
+    private String kind = "BOTH";
+
+    public SubscriptionRequest() {}
+
+    public SubscriptionRequest(String email, String kind) {
+        this.email = email;
+        this.kind = kind;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+}
@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 
+import java.time.Instant;
+
 @Entity
 @Table(name = "email_credentials")
 public class EmailCredentials {
@@ -34,6 +36,23 @@ public class EmailCredentials {
     @Column(nullable = false)
     private Boolean sslEnabled;
 
+    // Resultado de la última verificación IMAP: PENDING, VALID, INVALID o ERROR
+    @Column(length = 16)
+    private String verificationStatus;
+
+    private Instant verifiedAt;
+
+    private Long loginLatencyMs;
+
+    @Column(length = 500)
+    private String verificationError;
+
+    // Capacidades anunciadas por el servidor en la verificación (null si aún no se conocen)
+    private Boolean supportsIdle;
+    private Boolean supportsCondstore;
+    private Boolean supportsQresync;
+    private Boolean supportsCompress;
+
     // Constructores
     public EmailCredentials() {}
 
@@ -91,4 +110,28 @@ public class EmailCredentials {
 
     public Boolean getSslEnabled() { return sslEnabled; }
     public void setSslEnabled(Boolean sslEnabled) { this.sslEnabled = sslEnabled; }
+
+    public String getVerificationStatus() { return verificationStatus; }
+    public void setVerificationStatus(String verificationStatus) { this.verificationStatus = verificationStatus; }
+
+    public Instant getVerifiedAt() { return verifiedAt; }
+    public void setVerifiedAt(Instant verifiedAt) { this.verifiedAt = verifiedAt; }
+
+    public Long getLoginLatencyMs() { return loginLatencyMs; }
+    public void setLoginLatencyMs(Long loginLatencyMs) { this.loginLatencyMs = loginLatencyMs; }
+
+    public String getVerificationError() { return verificationError; }
+    public void setVerificationError(String verificationError) { this.verificationError = verificationError; }
+
+    public Boolean getSupportsIdle() { return supportsIdle; }
+    public void setSupportsIdle(Boolean supportsIdle) { this.supportsIdle = supportsIdle; }
+
+    public Boolean getSupportsCondstore() { return supportsCondstore; }
+    public void setSupportsCondstore(Boolean supportsCondstore) { this.supportsCondstore = supportsCondstore; }
+
+    public Boolean getSupportsQresync() { return supportsQresync; }
+    public void setSupportsQresync(Boolean supportsQresync) { this.supportsQresync = supportsQresync; }
+
+    public Boolean getSupportsCompress() { return supportsCompress; }
+    public void setSupportsCompress(Boolean supportsCompress) { this.supportsCompress = supportsCompress; }
 }
@@ -0,0 +1,102 @@
+package backend.consutalar_correo.entities;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "mailbox_cursors")
+public class MailboxCursor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(unique = true, nullable = false)
+    private Long credentialsId;
+
+    // Si el servidor cambia UIDVALIDITY, los UID anteriores dejan de ser válidos
+    private Long uidValidity;
+
+    // Último UID revisado en INBOX
+    private Long lastUid;
+
+    // Última clasificación: enlace de hogar
+    @Column(length = 2048)
+    private String lastHomeLink;
+    private Long lastHomeLinkUid;
+    private Instant lastHomeLinkReceivedAt;
+
+    // Última clasificación: URL del botón "Obtener código"
+    @Column(length = 2048)
+    private String lastCodeUrl;
+    private Long lastCodeUid;
+    private Instant lastCodeReceivedAt;
+
+    private Instant updatedAt;
+
+    // Constructores
+    public MailboxCursor() {}
+
+    public MailboxCursor(Long credentialsId) {
+        this.credentialsId = credentialsId;
+    }
+
+    // Reinicia el cursor para reescanear el buzón desde cero
+    public void reset(Long uidValidity) {
+        this.uidValidity = uidValidity;
+        this.lastUid = null;
+        this.lastHomeLink = null;
+        this.lastHomeLinkUid = null;
+        this.lastHomeLinkReceivedAt = null;
+        this.lastCodeUrl = null;
+        this.lastCodeUid = null;
+        this.lastCodeReceivedAt = null;
+    }
+
+    public void recordHomeLink(String link, Long uid, Instant receivedAt) {
+        this.lastHomeLink = link;
+        this.lastHomeLinkUid = uid;
+        this.lastHomeLinkReceivedAt = receivedAt;
+    }
+
+    public void recordCodeUrl(String codeUrl, Long uid, Instant receivedAt) {
+        this.lastCodeUrl = codeUrl;
+        this.lastCodeUid = uid;
+        this.lastCodeReceivedAt = receivedAt;
+    }
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getCredentialsId() { return credentialsId; }
+    public void setCredentialsId(Long credentialsId) { this.credentialsId = credentialsId; }
+
+    public Long getUidValidity() { return uidValidity; }
+    public void setUidValidity(Long uidValidity) { this.uidValidity = uidValidity; }
+
+    public Long getLastUid() { return lastUid; }
+    public void setLastUid(Long lastUid) { this.lastUid = lastUid; }
+
+    public String getLastHomeLink() { return lastHomeLink; }
+    public void setLastHomeLink(String lastHomeLink) { this.lastHomeLink = lastHomeLink; }
+
+    public Long getLastHomeLinkUid() { return lastHomeLinkUid; }
+    public void setLastHomeLinkUid(Long lastHomeLinkUid) { this.lastHomeLinkUid = lastHomeLinkUid; }
+
+    public Instant getLastHomeLinkReceivedAt() { return lastHomeLinkReceivedAt; }
+    public void setLastHomeLinkReceivedAt(Instant lastHomeLinkReceivedAt) { this.lastHomeLinkReceivedAt = lastHomeLinkReceivedAt; }
+
+    public String getLastCodeUrl() { return lastCodeUrl; }
+    public void setLastCodeUrl(String lastCodeUrl) { this.lastCodeUrl = lastCodeUrl; }
+
+    public Long getLastCodeUid() { return lastCodeUid; }
+    public void setLastCodeUid(Long lastCodeUid) { this.lastCodeUid = lastCodeUid; }
+
+    public Instant getLastCodeReceivedAt() { return lastCodeReceivedAt; }
+    public void setLastCodeReceivedAt(Instant lastCodeReceivedAt) { this.lastCodeReceivedAt = lastCodeReceivedAt; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,16 @@
+package backend.consutalar_correo.exception;
+
+import jakarta.mail.MessagingException;
+
+// El trabajo IMAP no se intentó: servidor saturado, circuito abierto o buzón sin conexiones libres.
+// No cuenta como fallo del servidor para el circuit breaker
+public class ImapBusyException extends MessagingException {
+
+    public ImapBusyException(String message) {
+        super(message);
+    }
+
+    public ImapBusyException(String message, Exception cause) {
+        super(message, cause);
+    }
+}
@@ -1,10 +1,24 @@
 package backend.consutalar_correo.repositories;
 
+import backend.consutalar_correo.dtos.CredentialsResponse;
 import backend.consutalar_correo.entities.EmailCredentials;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface EmailCredentialsRepository extends JpaRepository<EmailCredentials, Long> {
@@ -12,4 +26,54 @@ public interface EmailCredentialsRepository extends JpaRepository<EmailCredentia
     Optional<EmailCredentials> findByEmail(String email);
 
     boolean existsByEmail(String email);
+
+    List<EmailCredentials> findByEmailIn(Collection<String> emails);
+
+    // Solo se aplica si la contraseña no cambió mientras se verificaba
+    @Modifying
+    @Transactional
+    @Query("update EmailCredentials c set c.verificationStatus = :status, c.verifiedAt = :verifiedAt, " +
+            "c.loginLatencyMs = :latencyMs, c.verificationError = :error, c.supportsIdle = :idle, " +
+            "c.supportsCondstore = :condstore, c.supportsQresync = :qresync, c.supportsCompress = :compress " +
+            "where c.id = :id and c.encryptedPassword = :encryptedPassword")
+    int recordVerification(@Param("id") Long id,
+                           @Param("encryptedPassword") String encryptedPassword,
+                           @Param("status") String status,
+                           @Param("verifiedAt") Instant verifiedAt,
+                           @Param("latencyMs") Long latencyMs,
+                           @Param("error") String error,
+                           @Param("idle") Boolean idle,
+                           @Param("condstore") Boolean condstore,
+                           @Param("qresync") Boolean qresync,
+                           @Param("compress") Boolean compress);
+
+    // Migración del cifrado: no pisa una contraseña que otro proceso haya cambiado entretanto
+    @Modifying
+    @Transactional
+    @Query("update EmailCredentials c set c.encryptedPassword = :upgraded " +
+            "where c.id = :id and c.encryptedPassword = :current")
+    int upgradeEncryptedPassword(@Param("id") Long id,
+                                 @Param("current") String current,
+                                 @Param("upgraded") String upgraded);
+
+    // OPTIMIZACIÓN: Proyecciones directas a DTO: no cargan encryptedPassword ni entidades gestionadas
+    @Query(value = "select new backend.consutalar_correo.dtos.CredentialsResponse(c.id, c.email, c.provider, c.imapHost, c.imapPort, c.sslEnabled) " +
+            "from EmailCredentials c",
+            countQuery = "select count(c) from EmailCredentials c")
+    Page<CredentialsResponse> findResponsePage(Pageable pageable);
+
+    @Query("select new backend.consutalar_correo.dtos.CredentialsResponse(c.id, c.email, c.provider, c.imapHost, c.imapPort, c.sslEnabled) " +
+            "from EmailCredentials c order by c.id")
+    List<CredentialsResponse> findAllResponses();
+
+    // Paginación por cursor (id > afterId): el coste no crece con la página como con OFFSET
+    @Query("select new backend.consutalar_correo.dtos.CredentialsResponse(c.id, c.email, c.provider, c.imapHost, c.imapPort, c.sslEnabled) " +
+            "from EmailCredentials c where c.id > :afterId order by c.id")
+    List<CredentialsResponse> findResponsesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Debe consumirse dentro de una transacción y cerrarse al terminar
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new backend.consutalar_correo.dtos.CredentialsResponse(c.id, c.email, c.provider, c.imapHost, c.imapPort, c.sslEnabled) " +
+            "from EmailCredentials c order by c.id")
+    Stream<CredentialsResponse> streamAllResponses();
 }
@@ -0,0 +1,17 @@
+package backend.consutalar_correo.repositories;
+
+import backend.consutalar_correo.entities.MailboxCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface MailboxCursorRepository extends JpaRepository<MailboxCursor, Long> {
+
+    Optional<MailboxCursor> findByCredentialsId(Long credentialsId);
+
+    @Transactional
+    void deleteByCredentialsId(Long credentialsId);
+}
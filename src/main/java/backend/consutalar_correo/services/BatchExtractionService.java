@@ -0,0 +1,14 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.dtos.NetflixLinkResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface BatchExtractionService {
+
+    // Procesa los buzones en paralelo y entrega cada resultado en cuanto su buzón termina.
+    // El futuro se completa cuando todos los buzones han respondido
+    CompletableFuture<Void> extractBatch(List<String> emails, String kind, Consumer<NetflixLinkResponse> onResult);
+}
@@ -0,0 +1,17 @@
+package backend.consutalar_correo.services;
+
+import java.util.Optional;
+
+public interface CentralInboxIndex {
+
+    // true mientras la conexión de vigilancia está abierta y el índice incluye todos los correos recibidos
+    boolean isCurrent();
+
+    // Enlace de actualizar hogar del correo de Netflix más reciente para ese destinatario,
+    // solo si el correo sigue dentro de la validez del enlace
+    Optional<String> findLink(String recipient);
+
+    // true si el índice cubre toda la ventana de validez: entonces un fallo de findLink es definitivo.
+    // Mientras la siembra inicial no llegue tan atrás, un fallo debe confirmarse revisando el buzón
+    boolean isComplete();
+}
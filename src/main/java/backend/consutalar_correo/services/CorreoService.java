@@ -1,5 +1,10 @@
 package backend.consutalar_correo.services;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface CorreoService {
     String findNetflixUpdateHomeLinkFor(String correoBuscado);
+
+    // Igual que la versión síncrona, pero la lectura IMAP corre en el pool de IMAP
+    CompletableFuture<String> findNetflixUpdateHomeLinkForAsync(String correoBuscado);
 }
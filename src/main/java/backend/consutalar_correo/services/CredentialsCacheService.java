@@ -0,0 +1,16 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+
+import java.util.Optional;
+
+// Acceso cacheado a credenciales y contraseñas descifradas (bean aparte para que el proxy de cache actúe)
+public interface CredentialsCacheService {
+
+    Optional<EmailCredentials> findByEmail(String email);
+
+    String decryptPassword(String encryptedPassword);
+
+    // Se llama al guardar o eliminar credenciales
+    void evict(String email);
+}
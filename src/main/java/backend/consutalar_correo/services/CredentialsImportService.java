@@ -0,0 +1,14 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.dtos.CredentialsImportResponse;
+import backend.consutalar_correo.dtos.CredentialsRequest;
+
+import java.util.List;
+
+public interface CredentialsImportService {
+
+    CredentialsImportResponse importCredentials(List<CredentialsRequest> rows);
+
+    // CSV con cabecera email,password,provider
+    CredentialsImportResponse importCsv(String csv);
+}
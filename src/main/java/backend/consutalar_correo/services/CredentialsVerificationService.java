@@ -0,0 +1,21 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface CredentialsVerificationService {
+
+    String PENDING = "PENDING";
+    String VALID = "VALID";
+    String INVALID = "INVALID";
+    String ERROR = "ERROR";
+
+    // Login IMAP real en segundo plano: guarda resultado, latencia y capacidades, y deja la conexión en el pool
+    CompletableFuture<String> verifyAsync(EmailCredentials credentials);
+
+    // Verificación de muchas cuentas (importaciones) con concurrencia limitada, sin bloquear al llamante;
+    // las conexiones se cierran al terminar en lugar de quedarse en el pool
+    CompletableFuture<Void> verifyAllAsync(List<EmailCredentials> credentials);
+}
@@ -1,9 +1,12 @@
 package backend.consutalar_correo.services;
 
+import backend.consutalar_correo.dtos.CredentialsPageResponse;
+import backend.consutalar_correo.dtos.CredentialsResponse;
 import backend.consutalar_correo.entities.EmailCredentials;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface EmailCredentialsService {
 
@@ -11,11 +14,20 @@ public interface EmailCredentialsService {
 
     Optional<EmailCredentials> getCredentialsByEmail(String email);
 
-    List<EmailCredentials> getAllCredentials();
+    // Listado completo (contrato original de GET /api/credentials)
+    List<CredentialsResponse> getAllCredentials();
+
+    CredentialsPageResponse getCredentialsPage(int page, int size);
+
+    CredentialsPageResponse getCredentialsAfter(long afterId, int size);
+
+    // Recorre todas las credenciales sin cargarlas a la vez en memoria
+    void exportCredentials(Consumer<CredentialsResponse> consumer);
 
     boolean deleteCredentials(String email);
 
     boolean existsByEmail(String email);
 
-    boolean validateCredentials(String email);
+    // Devuelve el estado de verificación registrado o null si no hay credenciales
+    String validateCredentials(String email);
 }
@@ -1,6 +1,9 @@
 package backend.consutalar_correo.services;
 
+import backend.consutalar_correo.dtos.NetflixExtractionResult;
+
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface EmailProcessorService {
 
@@ -8,5 +11,18 @@ public interface EmailProcessorService {
 
     Optional<String> extractTemporaryCode(String email);
 
+    // Variantes no bloqueantes para los controladores
+    CompletableFuture<Optional<String>> extractNetflixHomeLinkAsync(String email);
+
+    CompletableFuture<Optional<String>> extractTemporaryCodeAsync(String email);
+
+    // Enlace y código con un solo login: el buzón se clasifica una vez y ambos se validan a la vez
+    NetflixExtractionResult extractAll(String email);
+
+    CompletableFuture<NetflixExtractionResult> extractAllAsync(String email);
+
     boolean validateEmailConnection(String email);
+
+    // Olvida lo extraído y el último STATUS del buzón (credenciales borradas o contraseña cambiada)
+    void forgetMailbox(Long credentialsId, String email);
 }
@@ -5,4 +5,7 @@ public interface EncryptionService {
     String encrypt(String plainText);
 
     String decrypt(String encryptedText);
+
+    // Cifrados en el formato antiguo (AES/ECB sin versión) que conviene volver a cifrar
+    boolean needsUpgrade(String encryptedText);
 }
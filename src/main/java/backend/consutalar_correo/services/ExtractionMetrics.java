@@ -0,0 +1,42 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+import io.micrometer.core.instrument.Timer;
+
+public interface ExtractionMetrics {
+
+    String STAGE_CREDENTIALS = "credentials";
+    String STAGE_DECRYPT = "decrypt";
+    String STAGE_CONNECT = "connect";
+    String STAGE_STATUS = "status";
+    String STAGE_FOLDER_OPEN = "folder_open";
+    String STAGE_FETCH = "fetch";
+    String STAGE_CLASSIFY = "classify";
+    String STAGE_URL_EXTRACT = "url_extract";
+    String STAGE_HTTP_VALIDATE = "http_validate";
+
+    String OUTCOME_SUCCESS = "success";
+    String OUTCOME_EMPTY = "empty";
+    String OUTCOME_ERROR = "error";
+
+    String UNKNOWN_PROVIDER = "unknown";
+
+    // Ejecuta una etapa midiendo su duración; el resultado nulo cuenta como "empty"
+    <T, E extends Exception> T stage(String stage, String provider, ExtractionKind kind, StageCall<T, E> call) throws E;
+
+    Timer.Sample start();
+
+    void stopStage(Timer.Sample sample, String stage, String provider, ExtractionKind kind, String outcome);
+
+    void stopRequest(Timer.Sample sample, ExtractionKind kind, String source, String outcome);
+
+    void storeLookup(ExtractionKind kind, boolean hit);
+
+    // coalesced = la llamada se unió a una extracción ya en curso en lugar de iniciar otra
+    void singleFlight(ExtractionKind kind, boolean coalesced);
+
+    @FunctionalInterface
+    interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+}
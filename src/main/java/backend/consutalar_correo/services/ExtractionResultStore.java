@@ -0,0 +1,19 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface ExtractionResultStore {
+
+    // Guarda el resultado hasta que caduca en Netflix (fecha de recepción + validez); uno más antiguo no pisa a uno nuevo
+    void put(String email, ExtractionKind kind, String value, long messageUid, Instant receivedAt);
+
+    Optional<String> get(String email, ExtractionKind kind);
+
+    // Un correo más nuevo del mismo tipo deja obsoleto el resultado guardado aunque no se haya podido extraer
+    void invalidateOlderThan(String email, ExtractionKind kind, long messageUid);
+
+    void invalidate(String email);
+}
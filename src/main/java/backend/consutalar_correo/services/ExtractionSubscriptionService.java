@@ -0,0 +1,9 @@
+package backend.consutalar_correo.services;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface ExtractionSubscriptionService {
+
+    // Mantiene abierta la conexión y envía el enlace/código en cuanto el buzón lo recibe
+    SseEmitter subscribe(String email, String kind);
+}
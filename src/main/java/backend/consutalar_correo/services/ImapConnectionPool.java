@@ -0,0 +1,50 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+
+public interface ImapConnectionPool {
+
+    Lease borrow(EmailCredentials credentials, String password) throws MessagingException;
+
+    // Solo ocupa un hueco del buzón, sin hablar con el servidor: la espera por un buzón
+    // ocupado queda fuera del límite por proveedor (ImapHostGuard)
+    Reservation reserve(EmailCredentials credentials) throws MessagingException;
+
+    void invalidate(Long credentialsId);
+
+    // Conexión fuera del pool para procesos de larga duración (IDLE)
+    Store openDedicated(EmailCredentials credentials, String password, int readTimeoutMs) throws MessagingException;
+
+    // Hueco reservado en el pool del buzón; si no llega a convertirse en préstamo, close() lo libera
+    interface Reservation extends AutoCloseable {
+
+        // Reutiliza una conexión (NOOP) o abre una nueva (TLS + LOGIN); el préstamo se queda con el hueco
+        Lease lease(String password) throws MessagingException;
+
+        @Override
+        void close();
+    }
+
+    // Conexión prestada: al cerrarla vuelve al pool en lugar de desconectarse
+    interface Lease extends AutoCloseable {
+
+        Store getStore();
+
+        Folder getInbox() throws MessagingException;
+
+        // STATUS de INBOX sin seleccionarla; con CONDSTORE incluye HIGHESTMODSEQ.
+        // Si INBOX ya está abierta se deriva de su estado tras el NOOP, sin enviar STATUS
+        InboxStatus getInboxStatus() throws MessagingException;
+
+        void invalidate();
+
+        @Override
+        void close();
+    }
+
+    // highestModSeq es -1 si el servidor no anuncia CONDSTORE o si la bandeja ya estaba seleccionada
+    record InboxStatus(long messages, long uidNext, long uidValidity, long highestModSeq) {}
+}
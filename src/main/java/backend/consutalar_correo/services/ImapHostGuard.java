@@ -0,0 +1,17 @@
+package backend.consutalar_correo.services;
+
+import jakarta.mail.MessagingException;
+
+import java.io.IOException;
+
+// Protege cada servidor IMAP compartido (Gmail, Outlook, Yahoo) con un límite de concurrencia
+// adaptativo y un circuit breaker, para que un proveedor lento no acapare todos los hilos
+public interface ImapHostGuard {
+
+    <T> T execute(String imapHost, ImapCall<T> call) throws MessagingException, IOException;
+
+    @FunctionalInterface
+    interface ImapCall<T> {
+        T call() throws MessagingException, IOException;
+    }
+}
@@ -0,0 +1,29 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.dtos.RateLimitScope;
+
+import java.util.List;
+import java.util.Locale;
+
+// Token buckets independientes por clave (email, IP, proveedor): un cliente activo
+// agota su propio cupo sin dejar sin servicio a los demás
+public interface KeyedRateLimiter {
+
+    // Consume un permiso de cada clave, o de ninguna si alguna está agotada.
+    // Devuelve 0 si se concede o los milisegundos hasta que habrá permisos para todas
+    long tryAcquire(List<Key> keys);
+
+    record Key(RateLimitScope scope, String value) {
+
+        public static Key of(RateLimitScope scope, String value) {
+            return new Key(scope, value == null ? "" : value.trim().toLowerCase(Locale.ROOT));
+        }
+
+        // El proveedor se identifica por el dominio del email (gmail.com, outlook.com...)
+        public static Key provider(String email) {
+            String normalized = email == null ? "" : email.trim();
+            int at = normalized.lastIndexOf('@');
+            return of(RateLimitScope.PROVIDER, at >= 0 ? normalized.substring(at + 1) : normalized);
+        }
+    }
+}
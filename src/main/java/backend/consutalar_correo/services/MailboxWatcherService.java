@@ -0,0 +1,12 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+
+public interface MailboxWatcherService {
+
+    void watch(EmailCredentials credentials);
+
+    void unwatch(Long credentialsId);
+
+    boolean isWatching(String email);
+}
@@ -0,0 +1,12 @@
+package backend.consutalar_correo.services;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+
+import java.io.IOException;
+
+public interface MessageBodyReader {
+
+    // Devuelve solo la parte de texto (HTML preferido) limitada a app.mail.body.max-bytes
+    String readTextBody(Part part) throws MessagingException, IOException;
+}
@@ -0,0 +1,59 @@
+package backend.consutalar_correo.services;
+
+import backend.consutalar_correo.dtos.NetflixContentScan;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public interface NetflixMessageAnalyzer {
+
+    // Clasifica el contenido y devuelve el enlace de hogar ya validado, o null
+    String findHomeLink(String content);
+
+    // Clasifica el contenido y devuelve el código temporal de 4 dígitos, o null
+    String findTemporaryCode(String content);
+
+    // Clasifica con un escaneo ya hecho: enlace de hogar validado, o null
+    String findHomeLink(NetflixContentScan scan);
+
+    // Clasifica con un escaneo ya hecho: código temporal, o null
+    String findTemporaryCode(NetflixContentScan scan);
+
+    String extractMessageContent(Message message) throws MessagingException, IOException;
+
+    // Recorre el contenido una sola vez; el resultado sirve para todas las reglas siguientes
+    NetflixContentScan scanContent(CharSequence content);
+
+    boolean isHomeUpdateContent(String content);
+
+    boolean isHomeUpdateContent(NetflixContentScan scan);
+
+    String findNetflixUrlInContent(String content);
+
+    String findNetflixUrlInContent(NetflixContentScan scan);
+
+    boolean isTemporaryCodeContent(String content);
+
+    boolean isTemporaryCodeContent(NetflixContentScan scan);
+
+    String findTemporaryCodeUrl(String content);
+
+    String findTemporaryCodeUrl(NetflixContentScan scan);
+
+    String extractCodeFromUrl(String url);
+
+    // Versión no bloqueante; las llamadas simultáneas con la misma URL comparten la petición
+    CompletableFuture<String> extractCodeFromUrlAsync(String url);
+
+    String extractFourDigitCode(String pageContent);
+
+    boolean validateNetflixHomeLinkOptimized(String url);
+
+    // Versión no bloqueante; las llamadas simultáneas con la misma URL comparten la petición
+    CompletableFuture<Boolean> validateNetflixHomeLinkAsync(String url);
+
+    // Comprueba si la página descargada muestra el botón de confirmar hogar
+    boolean isHomeConfirmationPage(String pageBody);
+}
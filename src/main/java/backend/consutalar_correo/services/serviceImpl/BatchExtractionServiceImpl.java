@@ -0,0 +1,137 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.NetflixExtractionResult;
+import backend.consutalar_correo.dtos.NetflixLinkResponse;
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.services.BatchExtractionService;
+import backend.consutalar_correo.services.CredentialsCacheService;
+import backend.consutalar_correo.services.EmailProcessorService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+@Service
+public class BatchExtractionServiceImpl implements BatchExtractionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchExtractionServiceImpl.class);
+
+    @Autowired
+    private EmailProcessorService emailProcessorService;
+
+    @Autowired
+    private CredentialsCacheService credentialsCacheService;
+
+    // Buzones del mismo servidor IMAP procesados a la vez (Gmail/Outlook limitan conexiones por IP)
+    @Value("${app.batch.max-concurrency-per-host:4}")
+    private int maxConcurrencyPerHost;
+
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    // Cada buzón espera en su propio hilo virtual; el trabajo IMAP sigue en el pool de IMAP
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("batch-extract-", 0).factory());
+
+    @Override
+    public CompletableFuture<Void> extractBatch(List<String> emails, String kind, Consumer<NetflixLinkResponse> onResult) {
+        // Un mismo buzón solo se procesa una vez por lote
+        Map<String, String> distinct = new LinkedHashMap<>();
+        for (String email : emails) {
+            distinct.putIfAbsent(email.trim().toLowerCase(), email.trim());
+        }
+        logger.info("Lote de extracción ({}) para {} buzones", kind, distinct.size());
+
+        CompletableFuture<?>[] tasks = distinct.values().stream()
+                .map(email -> CompletableFuture.runAsync(() -> onResult.accept(processMailbox(email, kind)), executor))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(tasks);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private NetflixLinkResponse processMailbox(String email, String kind) {
+        Optional<EmailCredentials> credentials = credentialsCacheService.findByEmail(email);
+        if (credentials.isEmpty()) {
+            return withEmail(new NetflixLinkResponse(false, "Credenciales no encontradas"), email);
+        }
+
+        Semaphore permits = hostPermits.computeIfAbsent(credentials.get().getImapHost().toLowerCase(),
+                host -> new Semaphore(maxConcurrencyPerHost));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return withEmail(new NetflixLinkResponse(false, "Lote cancelado"), email);
+        }
+
+        try {
+            return extract(email, kind);
+        } catch (Exception e) {
+            logger.error("Error en lote para {}: {}", email, e.getMessage());
+            return withEmail(new NetflixLinkResponse(false, "Error interno del servidor: " + e.getMessage()), email);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private NetflixLinkResponse extract(String email, String kind) {
+        Optional<String> netflixLink;
+        Optional<String> temporaryCode;
+        switch (kind) {
+            case "LINK" -> {
+                netflixLink = emailProcessorService.extractNetflixHomeLinkAsync(email).join();
+                temporaryCode = Optional.empty();
+            }
+            case "CODE" -> {
+                netflixLink = Optional.empty();
+                temporaryCode = emailProcessorService.extractTemporaryCodeAsync(email).join();
+            }
+            default -> {
+                // OPTIMIZACIÓN: Con BOTH una sola lectura del buzón (un préstamo, un avance del cursor)
+                // clasifica enlace y código, en lugar de dos lecturas que compiten por el mismo buzón
+                NetflixExtractionResult result = emailProcessorService.extractAllAsync(email).join();
+                netflixLink = Optional.ofNullable(result.getNetflixLink());
+                temporaryCode = Optional.ofNullable(result.getTemporaryCode());
+            }
+        }
+
+        if (netflixLink.isEmpty() && temporaryCode.isEmpty()) {
+            String message = switch (kind) {
+                case "LINK" -> "No se encontró enlace de actualización de hogar.";
+                case "CODE" -> "No se encontró código temporal";
+                default -> "No se encontró enlace ni código temporal";
+            };
+            return withEmail(new NetflixLinkResponse(false, message), email);
+        }
+
+        NetflixLinkResponse response = temporaryCode.isPresent()
+                ? new NetflixLinkResponse(true, temporaryCode.get(), email, true)
+                : new NetflixLinkResponse(true, netflixLink.get(), email);
+        if (netflixLink.isPresent() && temporaryCode.isPresent()) {
+            response.setNetflixLink(netflixLink.get());
+            response.setMessage("Se encontro enlace de actualizar hogar y codigo temporal");
+        }
+        return response;
+    }
+
+    private NetflixLinkResponse withEmail(NetflixLinkResponse response, String email) {
+        response.setEmail(email);
+        return response;
+    }
+}
@@ -0,0 +1,305 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.CentralInboxIndexProperties;
+import backend.consutalar_correo.config.ImapProperties;
+import backend.consutalar_correo.services.CentralInboxIndex;
+import backend.consutalar_correo.services.MessageBodyReader;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class CentralInboxIndexImpl implements CentralInboxIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(CentralInboxIndexImpl.class);
+
+    @Autowired
+    private ImapProperties imapProperties;
+
+    @Autowired
+    private CentralInboxIndexProperties indexProperties;
+
+    @Autowired
+    private MessageBodyReader messageBodyReader;
+
+    // Misma ventana que los resultados pre-extraídos: el enlace de hogar caduca a los ~15 minutos
+    @Value("${app.results.link-validity-ms:900000}")
+    private long linkValidityMs;
+
+    // Destinatario normalizado -> correo de Netflix más reciente con enlace de hogar
+    private Cache<String, IndexEntry> entries;
+
+    // Hilo de plataforma a propósito, igual que la vigilancia por buzón: IDLE bloquea dentro de synchronized
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "central-inbox-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "central-inbox-idle-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean running = true;
+    private volatile boolean current;
+    private volatile Store store;
+    private volatile IMAPFolder inbox;
+    private long uidValidity;
+    private long lastUid;
+    // Fecha del correo más antiguo revisado en la siembra; Long.MIN_VALUE si se revisó el buzón entero
+    private volatile long coveredSince = Long.MAX_VALUE;
+
+    @PostConstruct
+    public void init() {
+        entries = Caffeine.newBuilder()
+                .maximumSize(indexProperties.getMaxEntries())
+                .expireAfterWrite(Duration.ofMillis(indexProperties.getEntryTtlMs()))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!indexProperties.isEnabled() || imapProperties.getHost() == null || imapProperties.getHost().isBlank()) {
+            logger.info("Índice del buzón central desactivado");
+            return;
+        }
+
+        executor.execute(this::run);
+        long refreshMs = indexProperties.getIdleRefreshMs();
+        refresher.scheduleWithFixedDelay(this::touch, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isCurrent() {
+        return current;
+    }
+
+    @Override
+    public Optional<String> findLink(String recipient) {
+        IndexEntry entry = entries.getIfPresent(CentralInboxMessages.normalize(recipient));
+        long validSince = System.currentTimeMillis() - linkValidityMs;
+        return Optional.ofNullable(entry)
+                .filter(e -> e.receivedAt() >= validSince)
+                .map(IndexEntry::link);
+    }
+
+    @Override
+    public boolean isComplete() {
+        return current && coveredSince <= System.currentTimeMillis() - linkValidityMs;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        close();
+        refresher.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                watchInbox();
+            } catch (Exception e) {
+                if (running) {
+                    logger.warn("Índice del buzón central desconectado: {}", e.getMessage());
+                }
+            } finally {
+                current = false;
+                close();
+            }
+            pause(indexProperties.getReconnectDelayMs());
+        }
+    }
+
+    private void watchInbox() throws MessagingException {
+        store = connect();
+        IMAPFolder folder = (IMAPFolder) store.getFolder(
+                imapProperties.getFolder() != null ? imapProperties.getFolder() : "INBOX");
+        folder.open(Folder.READ_ONLY);
+        inbox = folder;
+
+        if (folder.getUIDValidity() != uidValidity) {
+            // Primera conexión o buzón recreado: los UID anteriores ya no sirven
+            entries.invalidateAll();
+            uidValidity = folder.getUIDValidity();
+            seed(folder);
+        } else {
+            // Reconexión: solo los correos llegados mientras no había conexión
+            indexNewMessages(folder);
+        }
+
+        boolean supportsIdle = ((IMAPStore) store).hasCapability("IDLE");
+        current = true;
+        logger.info("Índice del buzón central al día ({} destinatarios) mediante {}",
+                entries.estimatedSize(), supportsIdle ? "IDLE" : "sondeo");
+
+        while (running && folder.isOpen()) {
+            if (supportsIdle) {
+                folder.idle(true);
+            } else {
+                pause(indexProperties.getPollIntervalMs());
+                folder.getMessageCount();
+            }
+            indexNewMessages(folder);
+        }
+    }
+
+    private void seed(IMAPFolder folder) throws MessagingException {
+        int total = folder.getMessageCount();
+        lastUid = Math.max(0, folder.getUIDNext() - 1);
+        coveredSince = Long.MIN_VALUE;
+        if (total == 0) {
+            return;
+        }
+
+        int from = Math.max(1, total - indexProperties.getInitialScanMessages() + 1);
+        Message[] seeded = folder.getMessages(from, total);
+        index(folder, seeded);
+        if (from > 1) {
+            // Los correos anteriores a la siembra no están indexados: solo se cubre desde el más antiguo revisado
+            coveredSince = CentralInboxMessages.receivedAtOf(seeded[0], System.currentTimeMillis());
+        }
+    }
+
+    private void indexNewMessages(IMAPFolder folder) throws MessagingException {
+        long previousUid = lastUid;
+        Message[] fresh = Arrays.stream(folder.getMessagesByUID(previousUid + 1, UIDFolder.LASTUID))
+                .filter(message -> uidOf(folder, message) > previousUid)
+                .toArray(Message[]::new);
+        if (fresh.length > 0) {
+            index(folder, fresh);
+        }
+    }
+
+    private void index(IMAPFolder folder, Message[] messages) throws MessagingException {
+        // Un solo FETCH con sobre y estructura; los cuerpos solo de los correos de Netflix
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.ENVELOPE);
+        profile.add(FetchProfile.Item.FLAGS);
+        profile.add(FetchProfile.Item.CONTENT_INFO);
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        folder.fetch(messages, profile);
+
+        int indexed = 0;
+        for (Message message : messages) {
+            long uid = folder.getUID(message);
+            lastUid = Math.max(lastUid, uid);
+
+            if (message.isSet(Flags.Flag.DELETED) || !CentralInboxMessages.looksLikeNetflix(message)) {
+                continue;
+            }
+
+            String body = readBody(message);
+            String link = CentralInboxMessages.findUpdateHomeLink(body);
+            if (link == null) {
+                continue;
+            }
+
+            IndexEntry entry = new IndexEntry(uid, link, CentralInboxMessages.receivedAtOf(message, System.currentTimeMillis()));
+            Set<String> recipients = CentralInboxMessages.recipientsOf(message, body);
+            for (String recipient : recipients) {
+                // Los correos llegan en orden de UID, pero la siembra y el respaldo pueden solaparse
+                entries.asMap().merge(recipient, entry, (existing, candidate) ->
+                        candidate.uid() > existing.uid() ? candidate : existing);
+            }
+            indexed++;
+        }
+
+        if (indexed > 0) {
+            logger.info("Buzón central: {} correos de hogar indexados (último UID {})", indexed, lastUid);
+        }
+    }
+
+    private String readBody(Message message) {
+        try {
+            return messageBodyReader.readTextBody(message);
+        } catch (Exception e) {
+            logger.debug("No se pudo leer el cuerpo del correo central: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Store connect() throws MessagingException {
+        Properties p = new Properties();
+        p.put("mail.store.protocol", "imaps");
+        p.put("mail.imaps.host", imapProperties.getHost());
+        p.put("mail.imaps.port", String.valueOf(imapProperties.getPort()));
+        p.put("mail.imaps.ssl.enable", String.valueOf(imapProperties.isSsl()));
+        p.put("mail.imaps.partialfetch", "true");
+        p.put("mail.imaps.fetchsize", "16384");
+        // El timeout de lectura debe cubrir un IDLE completo
+        p.put("mail.imaps.timeout", String.valueOf(indexProperties.getIdleRefreshMs() + 60000));
+
+        Session session = Session.getInstance(p);
+        Store imapStore = session.getStore("imaps");
+        imapStore.connect(imapProperties.getHost(), imapProperties.getUsername(), imapProperties.getPassword());
+        return imapStore;
+    }
+
+    // Interrumpe el IDLE en curso para que el servidor no lo corte por inactividad
+    private void touch() {
+        Folder folder = inbox;
+        try {
+            if (folder != null && folder.isOpen()) {
+                folder.getMessageCount();
+            }
+        } catch (Exception e) {
+            logger.debug("No se pudo renovar IDLE del buzón central: {}", e.getMessage());
+        }
+    }
+
+    private void close() {
+        try { if (inbox != null && inbox.isOpen()) inbox.close(false); } catch (Exception ignored) {}
+        try { if (store != null) store.close(); } catch (Exception ignored) {}
+    }
+
+    private long uidOf(IMAPFolder folder, Message message) {
+        try {
+            return folder.getUID(message);
+        } catch (MessagingException e) {
+            return -1;
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private record IndexEntry(long uid, String link, long receivedAt) {}
+}
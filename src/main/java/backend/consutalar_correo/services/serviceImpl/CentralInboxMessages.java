@@ -0,0 +1,122 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.internet.InternetAddress;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Reglas del buzón central compartidas por la búsqueda directa y el índice de destinatarios
+final class CentralInboxMessages {
+
+    // Enlaces de Netflix (puedes ajustar si ves otros patrones reales)
+    private static final Pattern NETFLIX_LINK =
+            Pattern.compile("(https?://(?:www\\.)?netflix\\.com[\\w\\-./?=&%]+)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern EMAIL_ADDRESS =
+            Pattern.compile("[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}");
+
+    // Un reenvío trae pocas direcciones; se limita por si el cuerpo es una lista larga
+    private static final int MAX_BODY_ADDRESSES = 20;
+
+    private CentralInboxMessages() {
+    }
+
+    static boolean looksLikeNetflix(Message m) {
+        return safeLower(subjectOf(m)).contains("netflix") || fromOf(m).contains("netflix");
+    }
+
+    static String findUpdateHomeLink(String body) {
+        if (body == null || body.isBlank()) return null;
+
+        Matcher matcher = NETFLIX_LINK.matcher(body);
+        while (matcher.find()) {
+            String link = matcher.group(1);
+            // Opcional: filtrar por rutas típicas de “hogar”
+            if (looksLikeUpdateHome(link)) {
+                return link;
+            }
+        }
+        return null;
+    }
+
+    // Destinatarios TO/CC/BCC y direcciones que aparecen en el cuerpo (correos reenviados), normalizados
+    static Set<String> recipientsOf(Message m, String body) {
+        Set<String> recipients = new LinkedHashSet<>();
+        try {
+            addAll(recipients, m.getRecipients(Message.RecipientType.TO));
+            addAll(recipients, m.getRecipients(Message.RecipientType.CC));
+            addAll(recipients, m.getRecipients(Message.RecipientType.BCC));
+        } catch (Exception ignored) {}
+
+        if (body != null) {
+            Matcher matcher = EMAIL_ADDRESS.matcher(body);
+            int found = 0;
+            while (matcher.find() && found++ < MAX_BODY_ADDRESSES) {
+                recipients.add(normalize(matcher.group()));
+            }
+        }
+        return recipients;
+    }
+
+    // Misma regla de destinatario en el índice y en la búsqueda directa
+    static boolean isAddressedTo(Message m, String body, String recipient) {
+        return recipientsOf(m, body).contains(normalize(recipient));
+    }
+
+    // Fecha de recepción (INTERNALDATE, llega con el sobre); si falta se usa la alternativa
+    static long receivedAtOf(Message m, long fallback) {
+        try {
+            return m.getReceivedDate() != null ? m.getReceivedDate().getTime() : fallback;
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+
+    static String fromOf(Message m) {
+        try {
+            Address[] from = m.getFrom();
+            if (from != null && from.length > 0) {
+                return safeLower(((InternetAddress) from[0]).getAddress());
+            }
+        } catch (Exception ignored) {}
+        return "";
+    }
+
+    static String normalize(String address) {
+        return address.trim().toLowerCase();
+    }
+
+    static String safeLower(String s) { return s == null ? "" : s.toLowerCase(); }
+
+    private static String subjectOf(Message m) {
+        try {
+            return m.getSubject();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void addAll(Set<String> recipients, Address[] addresses) {
+        if (addresses == null) return;
+        for (Address a : addresses) {
+            if (a instanceof InternetAddress ia && ia.getAddress() != null) {
+                recipients.add(normalize(ia.getAddress()));
+            }
+        }
+    }
+
+    private static boolean looksLikeUpdateHome(String link) {
+        // Heurística simple: enlaces de acciones/confirmaciones de Netflix suelen incluir rutas o params únicos
+        // Puedes ajustar esta lista según los correos reales que recibas
+        String l = link.toLowerCase();
+        if (!l.contains("netflix.com")) return false;
+
+        return l.contains("update") || l.contains("home")
+                || l.contains("verify") || l.contains("confirm")
+                || l.contains("set") || l.contains("manage");
+    }
+}
@@ -1,32 +1,80 @@
 package backend.consutalar_correo.services.serviceImpl;
 
 import backend.consutalar_correo.config.ImapProperties;
+import backend.consutalar_correo.services.CentralInboxIndex;
 import backend.consutalar_correo.services.CorreoService;
+import backend.consutalar_correo.services.ImapHostGuard;
+import backend.consutalar_correo.services.MessageBodyReader;
 import jakarta.mail.*;
-import jakarta.mail.internet.InternetAddress;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 public class CorreoServiceImpl implements CorreoService {
 
     private final ImapProperties props;
-
-    // Enlaces de Netflix (puedes ajustar si ves otros patrones reales)
-    private static final Pattern NETFLIX_LINK =
-            Pattern.compile("(https?://(?:www\\.)?netflix\\.com[\\w\\-./?=&%]+)", Pattern.CASE_INSENSITIVE);
-
-    public CorreoServiceImpl(ImapProperties props) {
+    private final MessageBodyReader messageBodyReader;
+    private final Executor imapTaskExecutor;
+    private final ImapHostGuard imapHostGuard;
+    private final CentralInboxIndex centralInboxIndex;
+    // Misma ventana que el índice: un enlace más antiguo ya no sirve, venga de donde venga
+    private final long linkValidityMs;
+
+    public CorreoServiceImpl(ImapProperties props, MessageBodyReader messageBodyReader,
+                             @Qualifier("imapTaskExecutor") Executor imapTaskExecutor,
+                             ImapHostGuard imapHostGuard,
+                             CentralInboxIndex centralInboxIndex,
+                             @Value("${app.results.link-validity-ms:900000}") long linkValidityMs) {
         this.props = props;
+        this.messageBodyReader = messageBodyReader;
+        this.imapTaskExecutor = imapTaskExecutor;
+        this.imapHostGuard = imapHostGuard;
+        this.centralInboxIndex = centralInboxIndex;
+        this.linkValidityMs = linkValidityMs;
+    }
+
+    @Override
+    public CompletableFuture<String> findNetflixUpdateHomeLinkForAsync(String correoBuscado) {
+        if (answeredByIndex(correoBuscado)) {
+            return CompletableFuture.completedFuture(centralInboxIndex.findLink(correoBuscado).orElse(null));
+        }
+        return CompletableFuture.supplyAsync(() -> scanWithGuard(correoBuscado), imapTaskExecutor);
     }
 
     @Override
     public String findNetflixUpdateHomeLinkFor(String correoBuscado) {
+        // OPTIMIZACIÓN: Con el índice al día la búsqueda es una consulta en memoria, sin abrir el buzón
+        if (answeredByIndex(correoBuscado)) {
+            return centralInboxIndex.findLink(correoBuscado).orElse(null);
+        }
+        return scanWithGuard(correoBuscado);
+    }
+
+    // El índice responde si tiene un enlace vigente o si cubre toda la ventana de validez;
+    // un fallo con la siembra aún parcial se confirma leyendo el buzón
+    private boolean answeredByIndex(String correoBuscado) {
+        return centralInboxIndex.isCurrent()
+                && (centralInboxIndex.findLink(correoBuscado).isPresent() || centralInboxIndex.isComplete());
+    }
+
+    // Respaldo mientras el índice no está conectado, se está poniendo al día o no llega tan atrás
+    private String scanWithGuard(String correoBuscado) {
+        try {
+            return imapHostGuard.execute(props.getHost(), () -> scanInbox(correoBuscado));
+        } catch (Exception e) {
+            // Loguea el error en producción
+            return null;
+        }
+    }
+
+    private String scanInbox(String correoBuscado) throws MessagingException {
+        Store store = connect();
         try {
-            Store store = connect();
             Folder inbox = store.getFolder(props.getFolder());
             inbox.open(Folder.READ_ONLY);
 
@@ -39,56 +87,70 @@ public class CorreoServiceImpl implements CorreoService {
             int from = Math.max(1, total - props.getLastMessagesToScan() + 1);
             Message[] msgs = inbox.getMessages(from, total);
 
+            // OPTIMIZACIÓN: Un solo FETCH con sobre (asunto, remitente, TO/CC/BCC), flags,
+            // tamaño y estructura para toda la ventana, en lugar de varias idas y vueltas por mensaje
+            FetchProfile profile = new FetchProfile();
+            profile.add(FetchProfile.Item.ENVELOPE);
+            profile.add(FetchProfile.Item.FLAGS);
+            profile.add(FetchProfile.Item.SIZE);
+            profile.add(FetchProfile.Item.CONTENT_INFO);
+            inbox.fetch(msgs, profile);
+
+            long scannedBytes = 0;
+            long now = System.currentTimeMillis();
+            long validSince = now - linkValidityMs;
+
             // Recorremos del más reciente al más antiguo
             for (int i = msgs.length - 1; i >= 0; i--) {
                 Message m = msgs[i];
 
+                if (m.isSet(Flags.Flag.DELETED)) continue;
+
                 // 1) Filtrar por asunto o remitente
-                String subject = safeLower(m.getSubject());
-                String fromAddr = extractFrom(m);
+                if (!CentralInboxMessages.looksLikeNetflix(m)) continue;
+
+                // El enlace de hogar caduca: los correos fuera de la ventana no se descargan
+                if (CentralInboxMessages.receivedAtOf(m, now) < validSince) continue;
 
-                boolean pareceNetflix = subject.contains("netflix")
-                        || fromAddr.contains("netflix");
+                // Límite por volumen de cuerpos descargados además de por número de mensajes
+                scannedBytes += Math.max(0, m.getSize());
+                if (scannedBytes > props.getMaxBytesToScan()) break;
 
-                if (!pareceNetflix) continue;
+                // 2) Extraer el cuerpo una sola vez (solo la parte de texto, con límite de bytes)
+                String body = extractBodyText(m);
 
-                // 2) Ver si el correo está “relacionado” al correoBuscado:
+                // 3) Ver si el correo está “relacionado” al correoBuscado:
                 //    a) aparece en destinatarios
                 //    b) aparece en el cuerpo (por reenvío)
-                if (!isRelatedToRecipient(m, correoBuscado) && !bodyContainsRecipient(m, correoBuscado)) {
+                if (!CentralInboxMessages.isAddressedTo(m, body, correoBuscado)) {
                     continue;
                 }
 
-                // 3) Extraer cuerpo y buscar el enlace
-                String body = extractBodyText(m);
-                if (body == null || body.isBlank()) continue;
-
-                Matcher matcher = NETFLIX_LINK.matcher(body);
-                while (matcher.find()) {
-                    String link = matcher.group(1);
-                    // Opcional: filtrar por rutas típicas de “hogar”
-                    if (looksLikeUpdateHome(link)) {
-                        close(inbox, store);
-                        return link;
-                    }
+                // 4) Buscar el enlace
+                String link = CentralInboxMessages.findUpdateHomeLink(body);
+                if (link != null) {
+                    close(inbox, store);
+                    return link;
                 }
             }
 
             close(inbox, store);
             return null;
 
-        } catch (Exception e) {
-            // Loguea el error en producción
-            return null;
+        } catch (MessagingException | RuntimeException e) {
+            close(null, store);
+            throw e;
         }
     }
 
-    private Store connect() throws Exception {
+    private Store connect() throws MessagingException {
         Properties p = new Properties();
         p.put("mail.store.protocol", "imaps");
         p.put("mail.imaps.host", props.getHost());
         p.put("mail.imaps.port", String.valueOf(props.getPort()));
         p.put("mail.imaps.ssl.enable", String.valueOf(props.isSsl()));
+        p.put("mail.imaps.partialfetch", "true");
+        p.put("mail.imaps.fetchsize", "16384");
 
         Session session = Session.getInstance(p);
         Store store = session.getStore("imaps");
@@ -101,87 +163,10 @@ public class CorreoServiceImpl implements CorreoService {
         try { if (store != null && store.isConnected()) store.close(); } catch (Exception ignored) {}
     }
 
-    private String safeLower(String s) { return s == null ? "" : s.toLowerCase(); }
-
-    private String extractFrom(Message m) {
-        try {
-            Address[] from = m.getFrom();
-            if (from != null && from.length > 0) {
-                return safeLower(((InternetAddress) from[0]).getAddress());
-            }
-        } catch (Exception ignored) {}
-        return "";
-    }
-
-    private boolean isRelatedToRecipient(Message m, String correoBuscado) {
-        try {
-            Address[] to = m.getRecipients(Message.RecipientType.TO);
-            Address[] cc = m.getRecipients(Message.RecipientType.CC);
-            Address[] bcc = m.getRecipients(Message.RecipientType.BCC);
-
-            if (containsAddress(to, correoBuscado)) return true;
-            if (containsAddress(cc, correoBuscado)) return true;
-            if (containsAddress(bcc, correoBuscado)) return true;
-        } catch (Exception ignored) {}
-        return false;
-    }
-
-    private boolean containsAddress(Address[] addrs, String correo) {
-        if (addrs == null) return false;
-        String correoLower = correo.toLowerCase();
-        for (Address a : addrs) {
-            if (a instanceof InternetAddress ia) {
-                String addr = safeLower(ia.getAddress());
-                if (addr.equals(correoLower)) return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean bodyContainsRecipient(Message m, String correoBuscado) {
+    private String extractBodyText(Message m) {
         try {
-            String body = extractBodyText(m);
-            return body != null && body.toLowerCase().contains(correoBuscado.toLowerCase());
+            return messageBodyReader.readTextBody(m);
         } catch (Exception ignored) {}
-        return false;
-    }
-
-    private String extractBodyText(Message m) throws Exception {
-        Object content = m.getContent();
-        if (content instanceof String s) {
-            return s;
-        } else if (content instanceof Multipart mp) {
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < mp.getCount(); i++) {
-                BodyPart part = mp.getBodyPart(i);
-                if (Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())) {
-                    continue;
-                }
-                if (part.isMimeType("text/plain") || part.isMimeType("text/html")) {
-                    sb.append(part.getContent().toString()).append("\n");
-                } else if (part.getContent() instanceof Multipart nested) {
-                    // partes anidadas (HTML con imágenes, etc.)
-                    for (int j = 0; j < nested.getCount(); j++) {
-                        BodyPart np = nested.getBodyPart(j);
-                        if (np.isMimeType("text/plain") || np.isMimeType("text/html")) {
-                            sb.append(np.getContent().toString()).append("\n");
-                        }
-                    }
-                }
-            }
-            return sb.toString();
-        }
         return null;
     }
-
-    private boolean looksLikeUpdateHome(String link) {
-        // Heurística simple: enlaces de acciones/confirmaciones de Netflix suelen incluir rutas o params únicos
-        // Puedes ajustar esta lista según los correos reales que recibas
-        String l = link.toLowerCase();
-        if (!l.contains("netflix.com")) return false;
-
-        return l.contains("update") || l.contains("home")
-                || l.contains("verify") || l.contains("confirm")
-                || l.contains("set") || l.contains("manage");
-    }
 }
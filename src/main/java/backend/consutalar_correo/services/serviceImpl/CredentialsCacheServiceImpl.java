@@ -0,0 +1,74 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.CacheConfig;
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.services.CredentialsCacheService;
+import backend.consutalar_correo.services.EncryptionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+@Service
+public class CredentialsCacheServiceImpl implements CredentialsCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialsCacheServiceImpl.class);
+
+    @Autowired
+    private EmailCredentialsRepository emailCredentialsRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    // OPTIMIZACIÓN: Cache para credenciales (reduce consultas DB); los emails sin credenciales no se guardan
+    @Cacheable(value = CacheConfig.EMAIL_CREDENTIALS, key = "#email", unless = "#result == null")
+    @Override
+    public Optional<EmailCredentials> findByEmail(String email) {
+        logger.debug("Credenciales de {} leídas de la base de datos", email);
+        return emailCredentialsRepository.findByEmail(email).map(this::upgradeEncryption);
+    }
+
+    // OPTIMIZACIÓN: Cache para passwords desencriptados
+    @Cacheable(value = CacheConfig.ENCRYPTION, key = "#encryptedPassword")
+    @Override
+    public String decryptPassword(String encryptedPassword) {
+        return encryptionService.decrypt(encryptedPassword);
+    }
+
+    // Las filas cifradas con el formato antiguo se pasan a AES-GCM la primera vez que se leen
+    private EmailCredentials upgradeEncryption(EmailCredentials credentials) {
+        if (!encryptionService.needsUpgrade(credentials.getEncryptedPassword())) {
+            return credentials;
+        }
+        try {
+            String current = credentials.getEncryptedPassword();
+            String upgraded = encryptionService.encrypt(encryptionService.decrypt(current));
+            // Actualización condicionada en lugar de save(): un cambio de contraseña simultáneo gana
+            if (emailCredentialsRepository.upgradeEncryptedPassword(credentials.getId(), current, upgraded) == 0) {
+                logger.debug("Migración del cifrado de {} descartada: la contraseña cambió", credentials.getEmail());
+                return credentials;
+            }
+            credentials.setEncryptedPassword(upgraded);
+            logger.info("Contraseña de {} migrada al cifrado v2", credentials.getEmail());
+            return credentials;
+        } catch (Exception e) {
+            logger.warn("No se pudo migrar el cifrado de {}: {}", credentials.getEmail(), e.getMessage());
+            return credentials;
+        }
+    }
+
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.EMAIL_CREDENTIALS, key = "#email"),
+            @CacheEvict(value = CacheConfig.CONNECTION, key = "#email")
+    })
+    @Override
+    public void evict(String email) {
+        logger.debug("Cache de credenciales invalidada para: {}", email);
+    }
+}
@@ -0,0 +1,359 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.MailboxWatcherProperties;
+import backend.consutalar_correo.dtos.CredentialsImportResponse;
+import backend.consutalar_correo.dtos.CredentialsImportResult;
+import backend.consutalar_correo.dtos.CredentialsRequest;
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.services.CredentialsCacheService;
+import backend.consutalar_correo.services.CredentialsImportService;
+import backend.consutalar_correo.services.CredentialsVerificationService;
+import backend.consutalar_correo.services.EmailProcessorService;
+import backend.consutalar_correo.services.EncryptionService;
+import backend.consutalar_correo.services.MailboxWatcherService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class CredentialsImportServiceImpl implements CredentialsImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialsImportServiceImpl.class);
+
+    // La contraseña importada no está verificada: el estado vuelve a PENDING y se olvidan las capacidades
+    private static final String RESET_VERIFICATION =
+            "verification_status = 'PENDING', verified_at = NULL, login_latency_ms = NULL, verification_error = NULL, " +
+            "supports_idle = NULL, supports_condstore = NULL, supports_qresync = NULL, supports_compress = NULL";
+
+    private static final String POSTGRES_UPSERT =
+            "INSERT INTO email_credentials (email, encrypted_password, provider, imap_host, imap_port, ssl_enabled, verification_status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 'PENDING') " +
+            "ON CONFLICT (email) DO UPDATE SET encrypted_password = EXCLUDED.encrypted_password, " +
+            "provider = EXCLUDED.provider, imap_host = EXCLUDED.imap_host, " +
+            "imap_port = EXCLUDED.imap_port, ssl_enabled = EXCLUDED.ssl_enabled, " + RESET_VERIFICATION;
+
+    private static final String SQLSERVER_UPSERT =
+            "MERGE email_credentials WITH (HOLDLOCK) AS target " +
+            "USING (VALUES (?, ?, ?, ?, ?, ?)) AS source (email, encrypted_password, provider, imap_host, imap_port, ssl_enabled) " +
+            "ON target.email = source.email " +
+            "WHEN MATCHED THEN UPDATE SET encrypted_password = source.encrypted_password, provider = source.provider, " +
+            "imap_host = source.imap_host, imap_port = source.imap_port, ssl_enabled = source.ssl_enabled, " + RESET_VERIFICATION + " " +
+            "WHEN NOT MATCHED THEN INSERT (email, encrypted_password, provider, imap_host, imap_port, ssl_enabled, verification_status) " +
+            "VALUES (source.email, source.encrypted_password, source.provider, source.imap_host, source.imap_port, source.ssl_enabled, 'PENDING');";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private EmailCredentialsRepository emailCredentialsRepository;
+
+    @Autowired
+    private CredentialsCacheService credentialsCacheService;
+
+    @Autowired
+    private MailboxWatcherService mailboxWatcherService;
+
+    @Autowired
+    private MailboxWatcherProperties watcherProperties;
+
+    @Autowired
+    private CredentialsVerificationService credentialsVerificationService;
+
+    @Autowired
+    private EmailProcessorService emailProcessorService;
+
+    @Value("${app.credentials.import.max-rows:10000}")
+    private int maxRows;
+
+    @Value("${app.credentials.import.batch-size:500}")
+    private int batchSize;
+
+    private volatile String upsertSql;
+
+    @Override
+    public CredentialsImportResponse importCredentials(List<CredentialsRequest> rows) {
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("La importación no contiene filas");
+        }
+        if (rows.size() > maxRows) {
+            throw new IllegalArgumentException("Máximo " + maxRows + " filas por importación");
+        }
+
+        long start = System.currentTimeMillis();
+        logger.info("Importando {} credenciales", rows.size());
+
+        CredentialsImportResult[] results = new CredentialsImportResult[rows.size()];
+        List<Integer> accepted = validate(rows, results);
+
+        // OPTIMIZACIÓN: El cifrado (CPU) se reparte entre todos los núcleos
+        EmailCredentials[] prepared = new EmailCredentials[rows.size()];
+        accepted.parallelStream().forEach(i -> {
+            CredentialsRequest row = rows.get(i);
+            try {
+                prepared[i] = new EmailCredentials(normalizeEmail(row.getEmail()),
+                        encryptionService.encrypt(row.getPassword()), row.getProvider());
+            } catch (Exception e) {
+                results[i] = failed(i, row.getEmail(), e.getMessage());
+            }
+        });
+
+        List<Integer> ready = accepted.stream().filter(i -> prepared[i] != null).toList();
+        List<EmailCredentials> saved = new ArrayList<>(ready.size());
+        for (int from = 0; from < ready.size(); from += batchSize) {
+            List<Integer> chunk = ready.subList(from, Math.min(ready.size(), from + batchSize));
+            saved.addAll(upsertChunk(chunk, prepared, results));
+        }
+        // Una sola tanda para toda la importación: la concurrencia de logins no crece con el número de bloques
+        if (!saved.isEmpty()) {
+            credentialsVerificationService.verifyAllAsync(saved);
+        }
+
+        CredentialsImportResponse response = new CredentialsImportResponse(Arrays.asList(results),
+                System.currentTimeMillis() - start);
+        logger.info("Importación terminada en {} ms: {} creadas, {} actualizadas, {} fallidas",
+                response.getElapsedMs(), response.getCreated(), response.getUpdated(), response.getFailed());
+        return response;
+    }
+
+    @Override
+    public CredentialsImportResponse importCsv(String csv) {
+        if (csv == null || csv.isBlank()) {
+            throw new IllegalArgumentException("El CSV está vacío");
+        }
+
+        List<String> lines = csv.lines().filter(line -> !line.isBlank()).toList();
+        List<String> header = parseCsvLine(lines.get(0)).stream().map(h -> h.trim().toLowerCase()).toList();
+        int emailColumn = header.indexOf("email");
+        int passwordColumn = header.indexOf("password");
+        int providerColumn = header.indexOf("provider");
+        if (emailColumn < 0 || passwordColumn < 0 || providerColumn < 0) {
+            throw new IllegalArgumentException("La cabecera del CSV debe incluir email, password y provider");
+        }
+
+        List<CredentialsRequest> rows = new ArrayList<>(lines.size() - 1);
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> fields = parseCsvLine(line);
+            // Se recorta email y proveedor; la contraseña se respeta tal cual
+            rows.add(new CredentialsRequest(
+                    trimmed(field(fields, emailColumn)),
+                    field(fields, passwordColumn),
+                    trimmed(field(fields, providerColumn))));
+        }
+        return importCredentials(rows);
+    }
+
+    private List<Integer> validate(List<CredentialsRequest> rows, CredentialsImportResult[] results) {
+        List<Integer> accepted = new ArrayList<>(rows.size());
+        Map<String, Integer> firstRowByEmail = new HashMap<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            CredentialsRequest row = rows.get(i);
+            Set<ConstraintViolation<CredentialsRequest>> violations = validator.validate(row);
+            if (!violations.isEmpty()) {
+                results[i] = failed(i, row.getEmail(), violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                continue;
+            }
+
+            Integer previous = firstRowByEmail.putIfAbsent(normalizeEmail(row.getEmail()), i);
+            if (previous != null) {
+                results[i] = failed(i, row.getEmail(), "Email repetido en la importación (fila " + (previous + 1) + ")");
+                continue;
+            }
+            accepted.add(i);
+        }
+        return accepted;
+    }
+
+    private List<EmailCredentials> upsertChunk(List<Integer> chunk, EmailCredentials[] prepared,
+                                               CredentialsImportResult[] results) {
+        List<EmailCredentials> credentials = chunk.stream().map(i -> prepared[i]).toList();
+        Set<String> existing = matchExistingEmails(credentials);
+        String sql = upsertSql();
+
+        try {
+            // OPTIMIZACIÓN: Un único batch JDBC por bloque en lugar de findByEmail + save por cuenta
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(sql, credentials, credentials.size(), this::bind));
+            for (Integer i : chunk) {
+                results[i] = succeeded(i, prepared[i], existing);
+            }
+        } catch (DataAccessException e) {
+            // Se repite fila a fila solo para saber cuál falló
+            logger.warn("Fallo en el bloque de importación, reintentando fila a fila: {}", e.getMessage());
+            for (Integer i : chunk) {
+                try {
+                    jdbcTemplate.update(sql, statement -> bind(statement, prepared[i]));
+                    results[i] = succeeded(i, prepared[i], existing);
+                } catch (DataAccessException rowError) {
+                    results[i] = failed(i, prepared[i].getEmail(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+
+        return afterUpsert(chunk, prepared, results, existing);
+    }
+
+    // Las credenciales actualizadas invalidan las caches y la vigilancia usa el nuevo login;
+    // devuelve las filas guardadas para verificarlas todas juntas al final de la importación
+    private List<EmailCredentials> afterUpsert(List<Integer> chunk, EmailCredentials[] prepared, CredentialsImportResult[] results,
+                             Set<String> existing) {
+        List<String> imported = new ArrayList<>(chunk.size());
+        for (Integer i : chunk) {
+            if (!CredentialsImportResult.FAILED.equals(results[i].getStatus())) {
+                imported.add(prepared[i].getEmail());
+                if (existing.contains(prepared[i].getEmail())) {
+                    credentialsCacheService.evict(prepared[i].getEmail());
+                }
+            }
+        }
+        if (imported.isEmpty()) {
+            return List.of();
+        }
+
+        List<EmailCredentials> saved = emailCredentialsRepository.findByEmailIn(imported);
+        for (EmailCredentials credentials : saved) {
+            if (existing.contains(credentials.getEmail())) {
+                emailProcessorService.forgetMailbox(credentials.getId(), credentials.getEmail());
+            }
+        }
+        if (watcherProperties.isEnabled()) {
+            saved.forEach(mailboxWatcherService::watch);
+        }
+        return saved;
+    }
+
+    // Las filas ya normalizadas toman la grafía guardada de su email, para que el upsert
+    // y los resultados coincidan aunque la fila antigua tenga otras mayúsculas
+    private Set<String> matchExistingEmails(List<EmailCredentials> credentials) {
+        String placeholders = credentials.stream().map(c -> "?").collect(Collectors.joining(", "));
+        Object[] emails = credentials.stream().map(EmailCredentials::getEmail).toArray();
+        Map<String, String> stored = new HashMap<>();
+        for (String email : jdbcTemplate.queryForList(
+                "SELECT email FROM email_credentials WHERE LOWER(email) IN (" + placeholders + ")", String.class, emails)) {
+            stored.putIfAbsent(normalizeEmail(email), email);
+        }
+
+        Set<String> existing = new HashSet<>();
+        for (EmailCredentials row : credentials) {
+            String storedEmail = stored.get(row.getEmail());
+            if (storedEmail != null) {
+                row.setEmail(storedEmail);
+                existing.add(storedEmail);
+            }
+        }
+        return existing;
+    }
+
+    private void bind(PreparedStatement statement, EmailCredentials credentials) throws SQLException {
+        statement.setString(1, credentials.getEmail());
+        statement.setString(2, credentials.getEncryptedPassword());
+        statement.setString(3, credentials.getProvider());
+        statement.setString(4, credentials.getImapHost());
+        statement.setInt(5, credentials.getImapPort());
+        statement.setBoolean(6, credentials.getSslEnabled());
+    }
+
+    // La sentencia de upsert depende del motor: ON CONFLICT en PostgreSQL, MERGE en SQL Server
+    private String upsertSql() {
+        String sql = upsertSql;
+        if (sql == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            if (product != null && product.toLowerCase().contains("postgres")) {
+                sql = POSTGRES_UPSERT;
+            } else if (product != null && product.toLowerCase().contains("sql server")) {
+                sql = SQLSERVER_UPSERT;
+            } else {
+                throw new IllegalStateException("Base de datos no soportada para importación masiva: " + product);
+            }
+            upsertSql = sql;
+        }
+        return sql;
+    }
+
+    private CredentialsImportResult succeeded(int index, EmailCredentials credentials, Set<String> existing) {
+        String status = existing.contains(credentials.getEmail())
+                ? CredentialsImportResult.UPDATED
+                : CredentialsImportResult.CREATED;
+        return new CredentialsImportResult(index + 1, credentials.getEmail(), status, null);
+    }
+
+    private CredentialsImportResult failed(int index, String email, String message) {
+        return new CredentialsImportResult(index + 1, email, CredentialsImportResult.FAILED, message);
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    // Única normalización del email en la importación: deduplicado, alta y búsqueda de existentes
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    private static String trimmed(String value) {
+        return value != null ? value.trim() : null;
+    }
+}
@@ -0,0 +1,184 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.services.CredentialsCacheService;
+import backend.consutalar_correo.services.CredentialsVerificationService;
+import backend.consutalar_correo.services.ImapConnectionPool;
+import backend.consutalar_correo.services.ImapHostGuard;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class CredentialsVerificationServiceImpl implements CredentialsVerificationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialsVerificationServiceImpl.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private EmailCredentialsRepository emailCredentialsRepository;
+
+    @Autowired
+    private CredentialsCacheService credentialsCacheService;
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private ImapHostGuard imapHostGuard;
+
+    @Autowired
+    @Qualifier("imapTaskExecutor")
+    private Executor imapTaskExecutor;
+
+    @Value("${app.credentials.verification.concurrency:4}")
+    private int bulkConcurrency;
+
+    private final ConcurrentMap<Attempt, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public CompletableFuture<String> verifyAsync(EmailCredentials credentials) {
+        return verifyOnce(credentials, true);
+    }
+
+    @Override
+    public CompletableFuture<Void> verifyAllAsync(List<EmailCredentials> credentials) {
+        // Unas pocas cadenas en paralelo: cada verificación se encola al terminar la anterior,
+        // así miles de cuentas no llenan la cola del executor ni ocupan el hilo del llamante
+        int lanes = Math.max(1, Math.min(bulkConcurrency, credentials.size()));
+        CompletableFuture<?>[] chains = new CompletableFuture<?>[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<String> chain = CompletableFuture.completedFuture(null);
+            for (int i = lane; i < credentials.size(); i += lanes) {
+                EmailCredentials next = credentials.get(i);
+                // Las conexiones de una importación no vuelven al pool: caducarían sin usarse
+                chain = chain.thenCompose(previous -> verifyOnce(next, false));
+            }
+            chains[lane] = chain;
+        }
+        return CompletableFuture.allOf(chains);
+    }
+
+    // OPTIMIZACIÓN: Una sola verificación en curso por credencial y contraseña: las consultas repetidas
+    // mientras el estado es PENDING se unen a ella en lugar de lanzar otro login
+    private CompletableFuture<String> verifyOnce(EmailCredentials credentials, boolean keepConnection) {
+        Attempt attempt = new Attempt(credentials.getId(), credentials.getEncryptedPassword());
+
+        CompletableFuture<String> leader = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(attempt, leader);
+        if (running != null) {
+            logger.debug("Verificación de {} unida a una ya en curso", credentials.getEmail());
+            return running.copy();
+        }
+
+        try {
+            CompletableFuture.supplyAsync(() -> verify(credentials, keepConnection), imapTaskExecutor)
+                    .whenComplete((status, error) -> {
+                        inFlight.remove(attempt, leader);
+                        if (error != null) {
+                            leader.completeExceptionally(error);
+                        } else {
+                            leader.complete(status);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            inFlight.remove(attempt, leader);
+            leader.completeExceptionally(e);
+        }
+        return leader.copy();
+    }
+
+    private String verify(EmailCredentials credentials, boolean keepConnection) {
+        long start = System.nanoTime();
+        try {
+            String password = credentialsCacheService.decryptPassword(credentials.getEncryptedPassword());
+
+            // OPTIMIZACIÓN: La conexión verificada vuelve al pool con INBOX abierta; la primera extracción no paga TLS + LOGIN
+            Capabilities capabilities;
+            // La espera por un hueco del buzón no cuenta como latencia del servidor
+            try (ImapConnectionPool.Reservation reservation = imapConnectionPool.reserve(credentials)) {
+                capabilities = imapHostGuard.execute(credentials.getImapHost(), () -> {
+                    try (ImapConnectionPool.Lease lease = reservation.lease(password)) {
+                        if (!keepConnection) {
+                            lease.invalidate();
+                        }
+                        try {
+                            lease.getInbox();
+                        } catch (MessagingException e) {
+                            lease.invalidate();
+                            throw e;
+                        }
+                        IMAPStore store = (IMAPStore) lease.getStore();
+                        return new Capabilities(
+                                store.hasCapability("IDLE"),
+                                store.hasCapability("CONDSTORE"),
+                                store.hasCapability("QRESYNC"),
+                                store.hasCapability("COMPRESS=DEFLATE"));
+                    }
+                });
+            }
+
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            logger.info("Credenciales verificadas para {} en {} ms (IDLE={}, CONDSTORE={}, QRESYNC={}, COMPRESS={})",
+                    credentials.getEmail(), latencyMs, capabilities.idle(), capabilities.condstore(),
+                    capabilities.qresync(), capabilities.compress());
+            record(credentials, VALID, latencyMs, null, capabilities);
+            return VALID;
+
+        } catch (AuthenticationFailedException e) {
+            logger.warn("Login IMAP rechazado para {}: {}", credentials.getEmail(), e.getMessage());
+            record(credentials, INVALID, null, e.getMessage(), null);
+            return INVALID;
+        } catch (Exception e) {
+            logger.warn("No se pudo verificar {}: {}", credentials.getEmail(), e.getMessage());
+            record(credentials, ERROR, null, e.getMessage(), null);
+            return ERROR;
+        }
+    }
+
+    private void record(EmailCredentials credentials, String status, Long latencyMs, String error, Capabilities capabilities) {
+        try {
+            int updated = emailCredentialsRepository.recordVerification(
+                    credentials.getId(),
+                    credentials.getEncryptedPassword(),
+                    status,
+                    Instant.now(),
+                    latencyMs,
+                    error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error,
+                    capabilities != null ? capabilities.idle() : null,
+                    capabilities != null ? capabilities.condstore() : null,
+                    capabilities != null ? capabilities.qresync() : null,
+                    capabilities != null ? capabilities.compress() : null);
+
+            if (updated == 0) {
+                logger.debug("Verificación de {} descartada: las credenciales cambiaron", credentials.getEmail());
+                return;
+            }
+            // Las extracciones siguientes leen las capacidades desde la cache de credenciales
+            credentialsCacheService.evict(credentials.getEmail());
+        } catch (Exception e) {
+            logger.error("Error guardando la verificación de {}: {}", credentials.getEmail(), e.getMessage());
+        }
+    }
+
+    // Con otra contraseña es otra verificación: la anterior se descartará al guardarse
+    private record Attempt(Long credentialsId, String encryptedPassword) {}
+
+    private record Capabilities(boolean idle, boolean condstore, boolean qresync, boolean compress) {}
+}
@@ -1,16 +1,32 @@
 package backend.consutalar_correo.services.serviceImpl;
 
+import backend.consutalar_correo.dtos.CredentialsPageResponse;
+import backend.consutalar_correo.dtos.CredentialsResponse;
 import backend.consutalar_correo.entities.EmailCredentials;
 import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.repositories.MailboxCursorRepository;
+import backend.consutalar_correo.services.CredentialsCacheService;
+import backend.consutalar_correo.services.CredentialsVerificationService;
+import backend.consutalar_correo.services.EmailProcessorService;
 import backend.consutalar_correo.services.EmailCredentialsService;
 import backend.consutalar_correo.services.EncryptionService;
+import backend.consutalar_correo.services.ImapConnectionPool;
+import backend.consutalar_correo.services.MailboxWatcherService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class EmailCredentialsServiceImpl implements EmailCredentialsService {
@@ -20,9 +36,35 @@ public class EmailCredentialsServiceImpl implements EmailCredentialsService {
     @Autowired
     private EmailCredentialsRepository repository;
 
+    @Autowired
+    private MailboxCursorRepository mailboxCursorRepository;
+
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private MailboxWatcherService mailboxWatcherService;
+
+    @Autowired
+    private CredentialsCacheService credentialsCacheService;
+
+    @Autowired
+    private CredentialsVerificationService credentialsVerificationService;
+
+    // Enlaces y códigos ya extraídos se sirven sin mirar las credenciales: hay que olvidarlos al cambiarlas
+    @Autowired
+    private EmailProcessorService emailProcessorService;
+
+    @Value("${app.credentials.max-page-size:500}")
+    private int maxPageSize;
+
+    // Un ERROR (servidor caído, timeout, DNS) es transitorio: se vuelve a verificar pasado este tiempo
+    @Value("${app.credentials.verification.error-retry-ms:300000}")
+    private long errorRetryMs;
+
     @Override
     public EmailCredentials saveCredentials(String email, String password, String provider) {
         logger.info("Guardando credenciales para email: {}", email);
@@ -31,9 +73,11 @@ public class EmailCredentialsServiceImpl implements EmailCredentialsService {
         Optional<EmailCredentials> existingCredentials = repository.findByEmail(email);
 
         EmailCredentials credentials;
+        boolean passwordChanged = true;
         if (existingCredentials.isPresent()) {
             // Actualizar credenciales existentes
             credentials = existingCredentials.get();
+            passwordChanged = !samePassword(credentials, password);
             credentials.setEncryptedPassword(encryptionService.encrypt(password));
             credentials.setProvider(provider);
             logger.info("Actualizando credenciales existentes para: {}", email);
@@ -43,7 +87,29 @@ public class EmailCredentialsServiceImpl implements EmailCredentialsService {
             logger.info("Creando nuevas credenciales para: {}", email);
         }
 
-        return repository.save(credentials);
+        // El resultado anterior no vale para la nueva contraseña
+        credentials.setVerificationStatus(CredentialsVerificationService.PENDING);
+        credentials.setVerificationError(null);
+
+        EmailCredentials saved = repository.save(credentials);
+        // La contraseña pudo cambiar: las credenciales y la validación cacheadas ya no sirven
+        credentialsCacheService.evict(email);
+        if (existingCredentials.isPresent() && passwordChanged) {
+            emailProcessorService.forgetMailbox(saved.getId(), email);
+        }
+        mailboxWatcherService.watch(saved);
+        // OPTIMIZACIÓN: Verificación y calentamiento de la conexión sin hacer esperar al cliente
+        credentialsVerificationService.verifyAsync(saved);
+        return saved;
+    }
+
+    // El cifrado usa IV aleatorio: hay que comparar en claro
+    private boolean samePassword(EmailCredentials credentials, String password) {
+        try {
+            return password.equals(encryptionService.decrypt(credentials.getEncryptedPassword()));
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     @Override
@@ -52,8 +118,42 @@ public class EmailCredentialsServiceImpl implements EmailCredentialsService {
     }
 
     @Override
-    public List<EmailCredentials> getAllCredentials() {
-        return repository.findAll();
+    public List<CredentialsResponse> getAllCredentials() {
+        return repository.findAllResponses();
+    }
+
+    @Override
+    public CredentialsPageResponse getCredentialsPage(int page, int size) {
+        int pageSize = clampPageSize(size);
+        Page<CredentialsResponse> result = repository.findResponsePage(
+                PageRequest.of(Math.max(0, page), pageSize, Sort.by("id")));
+        return CredentialsPageResponse.ofPage(result.getContent(), result.getNumber(), pageSize,
+                result.getTotalPages(), result.getTotalElements());
+    }
+
+    @Override
+    public CredentialsPageResponse getCredentialsAfter(long afterId, int size) {
+        int pageSize = clampPageSize(size);
+        // Se pide un elemento de más para saber si hay otra página sin hacer COUNT
+        List<CredentialsResponse> rows = repository.findResponsesAfter(afterId, PageRequest.of(0, pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return CredentialsPageResponse.ofCursor(rows, pageSize, null);
+        }
+        List<CredentialsResponse> items = rows.subList(0, pageSize);
+        return CredentialsPageResponse.ofCursor(items, pageSize, items.get(pageSize - 1).getId());
+    }
+
+    // El Stream de JPA mantiene abierto el cursor de la base de datos mientras dura la transacción
+    @Transactional(readOnly = true)
+    @Override
+    public void exportCredentials(Consumer<CredentialsResponse> consumer) {
+        try (Stream<CredentialsResponse> rows = repository.streamAllResponses()) {
+            rows.forEach(consumer);
+        }
+    }
+
+    private int clampPageSize(int size) {
+        return Math.min(Math.max(1, size), maxPageSize);
     }
 
     @Override
@@ -61,6 +161,11 @@ public class EmailCredentialsServiceImpl implements EmailCredentialsService {
         Optional<EmailCredentials> credentials = repository.findByEmail(email);
         if (credentials.isPresent()) {
             repository.delete(credentials.get());
+            mailboxCursorRepository.deleteByCredentialsId(credentials.get().getId());
+            imapConnectionPool.invalidate(credentials.get().getId());
+            credentialsCacheService.evict(email);
+            mailboxWatcherService.unwatch(credentials.get().getId());
+            emailProcessorService.forgetMailbox(credentials.get().getId(), email);
             logger.info("Credenciales eliminadas para: {}", email);
             return true;
         }
@@ -73,23 +178,33 @@ public class EmailCredentialsServiceImpl implements EmailCredentialsService {
     }
 
     @Override
-    public boolean validateCredentials(String email) {
+    public String validateCredentials(String email) {
         try {
             Optional<EmailCredentials> credentialsOpt = getCredentialsByEmail(email);
             if (credentialsOpt.isEmpty()) {
-                return false;
+                return null;
             }
 
+            // OPTIMIZACIÓN: No se bloquea el hilo de la petición con un login IMAP: se responde con el
+            // estado registrado y, si aún no hay resultado, la verificación corre en segundo plano
             EmailCredentials credentials = credentialsOpt.get();
-            String decryptedPassword = encryptionService.decrypt(credentials.getEncryptedPassword());
-
-            // Aquí podrías agregar lógica para verificar la conexión
-            // Por ahora solo verificamos que se pueda descifrar
-            return decryptedPassword != null && !decryptedPassword.isEmpty();
+            String status = credentials.getVerificationStatus();
+            if (status == null || CredentialsVerificationService.PENDING.equals(status) || errorExpired(credentials)) {
+                // Varias consultas seguidas se unen a la misma verificación en curso
+                credentialsVerificationService.verifyAsync(credentials);
+                return CredentialsVerificationService.PENDING;
+            }
+            return status;
 
         } catch (Exception e) {
             logger.error("Error validando credenciales para {}: {}", email, e.getMessage());
-            return false;
+            return CredentialsVerificationService.ERROR;
         }
     }
+
+    private boolean errorExpired(EmailCredentials credentials) {
+        return CredentialsVerificationService.ERROR.equals(credentials.getVerificationStatus())
+                && (credentials.getVerifiedAt() == null
+                || credentials.getVerifiedAt().isBefore(Instant.now().minusMillis(errorRetryMs)));
+    }
 }
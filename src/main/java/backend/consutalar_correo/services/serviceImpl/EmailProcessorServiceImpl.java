@@ -1,520 +1,612 @@
 package backend.consutalar_correo.services.serviceImpl;
 
+import backend.consutalar_correo.config.CacheConfig;
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.dtos.NetflixContentScan;
+import backend.consutalar_correo.dtos.NetflixExtractionResult;
 import backend.consutalar_correo.entities.EmailCredentials;
-import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.entities.MailboxCursor;
+import backend.consutalar_correo.repositories.MailboxCursorRepository;
+import backend.consutalar_correo.services.CredentialsCacheService;
 import backend.consutalar_correo.services.EmailProcessorService;
-import backend.consutalar_correo.services.EncryptionService;
-
+import backend.consutalar_correo.services.ExtractionMetrics;
+import backend.consutalar_correo.services.ExtractionResultStore;
+import backend.consutalar_correo.services.ImapConnectionPool;
+import backend.consutalar_correo.services.ImapHostGuard;
+import backend.consutalar_correo.services.NetflixMessageAnalyzer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.mail.*;
 import jakarta.mail.search.*;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.eclipse.angus.mail.imap.IMAPFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.Calendar;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Optional;
-import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 public class EmailProcessorServiceImpl implements EmailProcessorService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailProcessorServiceImpl.class);
 
+    // La validación HTTP va contra Netflix, no contra el proveedor de correo
+    private static final String NETFLIX_PROVIDER = "NETFLIX";
+
     @Autowired
-    private EmailCredentialsRepository emailCredentialsRepository;
+    private MailboxCursorRepository mailboxCursorRepository;
 
+    // OPTIMIZACIÓN: Credenciales y contraseñas descifradas en cache (bean aparte para que el proxy actúe)
     @Autowired
-    private EncryptionService encryptionService;
+    private CredentialsCacheService credentialsCacheService;
 
-    // HTTP Client reutilizable para evitar crear múltiples instancias
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(5))
-            .build();
+    // OPTIMIZACIÓN: Conexiones IMAP reutilizables por buzón (evita TLS + LOGIN en cada petición)
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
 
-    // OPTIMIZACIÓN: Cache para credenciales (reduce consultas DB)
-    @Cacheable(value = "emailCredentials", key = "#email")
-    private Optional<EmailCredentials> getCachedCredentials(String email) {
-        return emailCredentialsRepository.findByEmail(email);
-    }
+    // OPTIMIZACIÓN: Límite adaptativo y circuit breaker por proveedor IMAP
+    @Autowired
+    private ImapHostGuard imapHostGuard;
 
-    // OPTIMIZACIÓN: Cache para passwords desencriptados
-    @Cacheable(value = "encryptionCache", key = "#encryptedPassword")
-    private String getCachedDecryptedPassword(String encryptedPassword) {
-        return encryptionService.decrypt(encryptedPassword);
-    }
+    // Tiempos por etapa (Micrometer) para localizar dónde se va la latencia
+    @Autowired
+    private ExtractionMetrics extractionMetrics;
 
-    @Override
-    public Optional<String> extractNetflixHomeLink(String email) {
-        try {
-            logger.info("INICIANDO PROCESO PARA: {}", email);
+    @Autowired
+    private NetflixMessageAnalyzer netflixMessageAnalyzer;
 
-            // Usar cache para credenciales
-            Optional<EmailCredentials> credentialsOpt = getCachedCredentials(email);
-            if (credentialsOpt.isEmpty()) {
-                logger.warn("Credenciales no encontradas para: {}", email);
-                return Optional.empty();
-            }
+    // OPTIMIZACIÓN: Resultados pre-extraídos por la vigilancia IMAP (responde sin ir al buzón)
+    @Autowired
+    private ExtractionResultStore extractionResultStore;
 
-            EmailCredentials credentials = credentialsOpt.get();
-            String decryptedPassword = getCachedDecryptedPassword(credentials.getEncryptedPassword());
-            logger.info("Credenciales obtenidas desde cache");
+    // Lecturas IMAP bloqueantes en un pool acotado de hilos de plataforma
+    @Autowired
+    @Qualifier("imapTaskExecutor")
+    private Executor imapTaskExecutor;
 
-            Store store = connectToEmailServer(credentials, decryptedPassword);
-            String netflixLink = findNetflixLinkRecent(store);
-            store.close();
+    // Ventana de búsqueda: solo correos de Netflix de los últimos minutos
+    @Value("${app.imap.search.since-minutes:60}")
+    private int searchSinceMinutes;
 
-            logger.info("PROCESO COMPLETADO");
-            return Optional.ofNullable(netflixLink);
+    @Value("${app.imap.search.max-results:5}")
+    private int searchMaxResults;
 
-        } catch (Exception e) {
-            logger.error("Error procesando email {}: {}", email, e.getMessage());
-            return Optional.empty();
+    @Value("${app.imap.status-check.enabled:true}")
+    private boolean statusCheckEnabled;
+
+    @Value("${app.imap.status-check.max-entries:10000}")
+    private long statusCheckMaxEntries;
+
+    // OPTIMIZACIÓN: Último STATUS de cada buzón junto con la clasificación que produjo;
+    // si el STATUS no cambia, la clasificación sigue siendo válida sin SELECT ni FETCH
+    private Cache<Long, MailboxSnapshot> snapshots;
+
+    @PostConstruct
+    public void init() {
+        snapshots = Caffeine.newBuilder()
+                .maximumSize(statusCheckMaxEntries)
+                .build();
+    }
+
+    @Override
+    public Optional<String> extractNetflixHomeLink(String email) {
+        return extractNetflixHomeLinkAsync(email).join();
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> extractNetflixHomeLinkAsync(String email) {
+        logger.info("INICIANDO PROCESO PARA: {}", email);
+        Timer.Sample request = extractionMetrics.start();
+
+        Optional<String> stored = extractionResultStore.get(email, ExtractionKind.LINK);
+        extractionMetrics.storeLookup(ExtractionKind.LINK, stored.isPresent());
+        if (stored.isPresent()) {
+            logger.info("Enlace servido desde memoria para: {}", email);
+            extractionMetrics.stopRequest(request, ExtractionKind.LINK, "store", ExtractionMetrics.OUTCOME_SUCCESS);
+            return CompletableFuture.completedFuture(stored);
         }
+
+        // OPTIMIZACIÓN: IMAP en su propio pool y validación HTTP no bloqueante
+        return CompletableFuture.supplyAsync(() -> findHomeLinkCandidate(email), imapTaskExecutor)
+                .thenCompose(candidate -> candidate == null
+                        ? CompletableFuture.<String>completedFuture(null)
+                        : validateHomeLink(candidate.value()).thenApply(link -> remember(email, ExtractionKind.LINK, link, candidate)))
+                .handle((netflixLink, error) -> {
+                    if (error != null) {
+                        logger.error("Error procesando email {}: {}", email, error.getMessage());
+                        extractionMetrics.stopRequest(request, ExtractionKind.LINK, "imap", ExtractionMetrics.OUTCOME_ERROR);
+                        return Optional.<String>empty();
+                    }
+                    logger.info("PROCESO COMPLETADO");
+                    extractionMetrics.stopRequest(request, ExtractionKind.LINK, "imap", outcomeOf(netflixLink));
+                    return Optional.ofNullable(netflixLink);
+                });
     }
 
     @Override
     public Optional<String> extractTemporaryCode(String email) {
-        try {
-            logger.info("EXTRAYENDO CODIGO TEMPORAL PARA: {}", email);
-
-            Optional<EmailCredentials> credentialsOpt = getCachedCredentials(email);
-            if (credentialsOpt.isEmpty()) {
-                logger.warn("Credenciales no encontradas para: {}", email);
-                return Optional.empty();
-            }
+        return extractTemporaryCodeAsync(email).join();
+    }
 
-            EmailCredentials credentials = credentialsOpt.get();
-            String decryptedPassword = getCachedDecryptedPassword(credentials.getEncryptedPassword());
+    @Override
+    public CompletableFuture<Optional<String>> extractTemporaryCodeAsync(String email) {
+        logger.info("EXTRAYENDO CODIGO TEMPORAL PARA: {}", email);
+        Timer.Sample request = extractionMetrics.start();
+
+        Optional<String> stored = extractionResultStore.get(email, ExtractionKind.CODE);
+        extractionMetrics.storeLookup(ExtractionKind.CODE, stored.isPresent());
+        if (stored.isPresent()) {
+            logger.info("Código servido desde memoria para: {}", email);
+            extractionMetrics.stopRequest(request, ExtractionKind.CODE, "store", ExtractionMetrics.OUTCOME_SUCCESS);
+            return CompletableFuture.completedFuture(stored);
+        }
 
-            Store store = connectToEmailServer(credentials, decryptedPassword);
-            String temporaryCode = findTemporaryCodeRecent(store);
-            store.close();
+        return CompletableFuture.supplyAsync(() -> findCodeUrlCandidate(email), imapTaskExecutor)
+                .thenCompose(candidate -> candidate == null
+                        ? CompletableFuture.<String>completedFuture(null)
+                        : extractCode(candidate.value()).thenApply(code -> remember(email, ExtractionKind.CODE, code, candidate)))
+                .handle((temporaryCode, error) -> {
+                    if (error != null) {
+                        logger.error("Error extrayendo codigo temporal para {}: {}", email, error.getMessage());
+                        extractionMetrics.stopRequest(request, ExtractionKind.CODE, "imap", ExtractionMetrics.OUTCOME_ERROR);
+                        return Optional.<String>empty();
+                    }
+                    extractionMetrics.stopRequest(request, ExtractionKind.CODE, "imap", outcomeOf(temporaryCode));
+                    logger.info("PROCESO CODIGO COMPLETADO: {}", temporaryCode != null ? "EXITO" : "SIN RESULTADO");
+                    return Optional.ofNullable(temporaryCode);
+                });
+    }
 
-            logger.info("PROCESO CODIGO COMPLETADO: {}", temporaryCode != null ? "EXITO" : "SIN RESULTADO");
-            return Optional.ofNullable(temporaryCode);
+    @Override
+    public NetflixExtractionResult extractAll(String email) {
+        return extractAllAsync(email).join();
+    }
 
-        } catch (Exception e) {
-            logger.error("Error extrayendo codigo temporal para {}: {}", email, e.getMessage());
-            return Optional.empty();
+    @Override
+    public CompletableFuture<NetflixExtractionResult> extractAllAsync(String email) {
+        logger.info("EXTRAYENDO ENLACE Y CODIGO PARA: {}", email);
+        Timer.Sample request = extractionMetrics.start();
+
+        Optional<String> storedLink = extractionResultStore.get(email, ExtractionKind.LINK);
+        extractionMetrics.storeLookup(ExtractionKind.LINK, storedLink.isPresent());
+        Optional<String> storedCode = extractionResultStore.get(email, ExtractionKind.CODE);
+        extractionMetrics.storeLookup(ExtractionKind.CODE, storedCode.isPresent());
+        if (storedLink.isPresent() && storedCode.isPresent()) {
+            logger.info("Enlace y código servidos desde memoria para: {}", email);
+            extractionMetrics.stopRequest(request, null, "store", ExtractionMetrics.OUTCOME_SUCCESS);
+            return CompletableFuture.completedFuture(new NetflixExtractionResult(storedLink.get(), storedCode.get()));
         }
+
+        // OPTIMIZACIÓN: Un único login y una sola clasificación del buzón para ambos artefactos;
+        // la validación del enlace y la obtención del código se lanzan a la vez
+        return CompletableFuture.supplyAsync(() -> findCandidates(email), imapTaskExecutor)
+                .thenCompose(candidates -> {
+                    CompletableFuture<String> link = storedLink.isPresent()
+                            ? CompletableFuture.completedFuture(storedLink.get())
+                            : candidates.link() == null
+                            ? CompletableFuture.completedFuture(null)
+                            : validateHomeLink(candidates.link().value())
+                                    .thenApply(valid -> remember(email, ExtractionKind.LINK, valid, candidates.link()));
+                    CompletableFuture<String> code = storedCode.isPresent()
+                            ? CompletableFuture.completedFuture(storedCode.get())
+                            : candidates.code() == null
+                            ? CompletableFuture.completedFuture(null)
+                            : extractCode(candidates.code().value())
+                                    .thenApply(found -> remember(email, ExtractionKind.CODE, found, candidates.code()));
+                    return link.thenCombine(code, NetflixExtractionResult::new);
+                })
+                .handle((result, error) -> {
+                    if (error != null) {
+                        logger.error("Error extrayendo enlace y código para {}: {}", email, error.getMessage());
+                        extractionMetrics.stopRequest(request, null, "imap", ExtractionMetrics.OUTCOME_ERROR);
+                        return NetflixExtractionResult.empty();
+                    }
+                    extractionMetrics.stopRequest(request, null, "imap",
+                            result.isEmpty() ? ExtractionMetrics.OUTCOME_EMPTY : ExtractionMetrics.OUTCOME_SUCCESS);
+                    logger.info("PROCESO COMBINADO COMPLETADO: enlace {}, código {}",
+                            result.getNetflixLink() != null ? "SI" : "NO", result.getTemporaryCode() != null ? "SI" : "NO");
+                    return result;
+                });
     }
 
     // OPTIMIZACIÓN: Cache para validaciones de conexión (evita reconectar constantemente)
-    @Cacheable(value = "connectionCache", key = "#email")
+    @Cacheable(value = CacheConfig.CONNECTION, key = "#email")
     @Override
     public boolean validateEmailConnection(String email) {
         try {
-            Optional<EmailCredentials> credentialsOpt = getCachedCredentials(email);
+            Optional<EmailCredentials> credentialsOpt = lookupCredentials(email, null);
             if (credentialsOpt.isEmpty()) {
                 return false;
             }
 
             EmailCredentials credentials = credentialsOpt.get();
-            String decryptedPassword = getCachedDecryptedPassword(credentials.getEncryptedPassword());
-
-            Store store = connectToEmailServer(credentials, decryptedPassword);
-            boolean isConnected = store.isConnected();
-            store.close();
-
-            return isConnected;
+            String decryptedPassword = decrypt(credentials, null);
+
+            try (ImapConnectionPool.Reservation reservation = imapConnectionPool.reserve(credentials)) {
+                return imapHostGuard.execute(credentials.getImapHost(), () -> {
+                    try (ImapConnectionPool.Lease lease = borrow(reservation, credentials, decryptedPassword, null)) {
+                        boolean connected = lease.getStore().isConnected();
+                        if (!connected) {
+                            lease.invalidate();
+                        }
+                        return connected;
+                    }
+                });
+            }
         } catch (Exception e) {
             logger.error("Error validando conexion para email {}: {}", email, e.getMessage());
             return false;
         }
     }
 
-    private Store connectToEmailServer(EmailCredentials credentials, String password) throws MessagingException {
-        Properties props = new Properties();
-        props.put("mail.store.protocol", "imaps");
-        props.put("mail.imaps.host", credentials.getImapHost());
-        props.put("mail.imaps.port", credentials.getImapPort().toString());
-        props.put("mail.imaps.ssl.enable", "true");
-        props.put("mail.imaps.ssl.trust", "*");
-        // OPTIMIZACIÓN: Timeouts más cortos para reducir tiempo de espera
-        props.put("mail.imaps.connectiontimeout", "5000");
-        props.put("mail.imaps.timeout", "8000");
-        props.put("mail.imaps.writetimeout", "5000");
-
-        Session session = Session.getInstance(props);
-        Store store = session.getStore("imaps");
-
-        logger.debug("Conectando a {} ({})", credentials.getProvider(), credentials.getImapHost());
-        store.connect(credentials.getImapHost(), credentials.getEmail(), password);
-
-        return store;
+    @Override
+    public void forgetMailbox(Long credentialsId, String email) {
+        if (credentialsId != null) {
+            snapshots.invalidate(credentialsId);
+        }
+        extractionResultStore.invalidate(email);
     }
 
-    private String findNetflixLinkRecent(Store store) throws MessagingException, IOException {
-        Folder inbox = store.getFolder("INBOX");
-        inbox.open(Folder.READ_ONLY);
-
-        logger.info("Buscando el mensaje MÁS RECIENTE (último que llegó)");
-
-        // CAMBIO: No filtrar por fecha, buscar en TODOS los mensajes para obtener el más reciente
-        Message[] allMessages = inbox.getMessages();
+    // Lectura IMAP bloqueante: enlace de hogar más reciente según el cursor del buzón, sin validar
+    private Candidate findHomeLinkCandidate(String email) {
+        try {
+            Optional<EmailCredentials> credentialsOpt = lookupCredentials(email, ExtractionKind.LINK);
+            if (credentialsOpt.isEmpty()) {
+                logger.warn("Credenciales no encontradas para: {}", email);
+                return null;
+            }
 
-        if (allMessages.length == 0) {
-            logger.warn("No hay mensajes en la bandeja");
-            inbox.close(false);
-            return null;
-        }
+            EmailCredentials credentials = credentialsOpt.get();
+            String decryptedPassword = decrypt(credentials, ExtractionKind.LINK);
+            logger.info("Credenciales obtenidas desde cache");
 
-        // El último mensaje del array es el MÁS RECIENTE que llegó
-        Message mostRecentMessage = allMessages[allMessages.length - 1];
+            MailboxCursor cursor = readMailbox(credentials, decryptedPassword, ExtractionKind.LINK);
 
-        logger.info("Analizando ÚNICAMENTE el mensaje más reciente: #{} de {} total",
-                allMessages.length, allMessages.length);
+            String link = recentOrNull(cursor.getLastHomeLink(), cursor.getLastHomeLinkReceivedAt());
+            if (link == null) {
+                logger.warn("No se encontró correo reciente de actualización de hogar");
+                return null;
+            }
 
-        String result = processLastMessageForHome(mostRecentMessage);
+            logger.info("Enlace de hogar del mensaje UID {}: {}", cursor.getLastHomeLinkUid(),
+                    link.substring(0, Math.min(60, link.length())) + "...");
+            return new Candidate(link, cursor.getLastHomeLinkUid(), cursor.getLastHomeLinkReceivedAt());
 
-        inbox.close(false);
-        return result;
+        } catch (Exception e) {
+            logger.error("Error procesando email {}: {}", email, e.getMessage());
+            return null;
+        }
     }
 
-    private String processLastMessageForHome(Message msg) throws MessagingException, IOException {
+    // Lectura IMAP bloqueante: el cursor clasifica enlace y código en la misma pasada
+    private Candidates findCandidates(String email) {
         try {
-            String subject = msg.getSubject();
-            Date receivedDate = msg.getReceivedDate();
-            logger.info("Analizando mensaje MÁS RECIENTE - Asunto: {} - Fecha: {}",
-                    subject != null ? subject : "Sin asunto",
-                    receivedDate != null ? receivedDate : "Sin fecha");
+            Optional<EmailCredentials> credentialsOpt = lookupCredentials(email, null);
+            if (credentialsOpt.isEmpty()) {
+                logger.warn("Credenciales no encontradas para: {}", email);
+                return Candidates.NONE;
+            }
 
-            String content = extractMessageContent(msg);
+            EmailCredentials credentials = credentialsOpt.get();
+            String decryptedPassword = decrypt(credentials, null);
 
-            if (content != null && isHomeUpdateContent(content)) {
-                logger.info("EMAIL DE HOGAR DETECTADO en mensaje más reciente");
-                String link = findNetflixUrlInContent(content);
+            MailboxCursor cursor = readMailbox(credentials, decryptedPassword, null);
+
+            String link = recentOrNull(cursor.getLastHomeLink(), cursor.getLastHomeLinkReceivedAt());
+            String codeUrl = recentOrNull(cursor.getLastCodeUrl(), cursor.getLastCodeReceivedAt());
+            return new Candidates(
+                    link != null ? new Candidate(link, cursor.getLastHomeLinkUid(), cursor.getLastHomeLinkReceivedAt()) : null,
+                    codeUrl != null ? new Candidate(codeUrl, cursor.getLastCodeUid(), cursor.getLastCodeReceivedAt()) : null);
 
-                if (link != null) {
-                    logger.info("Enlace encontrado en mensaje más reciente: {}",
-                            link.substring(0, Math.min(60, link.length())) + "...");
-
-                    if (validateNetflixHomeLinkOptimized(link)) {
-                        logger.info("ENLACE VALIDADO en mensaje más reciente");
-                        return link;
-                    } else {
-                        logger.warn("Enlace del mensaje más reciente no es válido: sin botón 'Confirmar actualización'");
-                    }
-                }
-            } else {
-                logger.info("El mensaje más reciente NO es de actualización de hogar");
-            }
         } catch (Exception e) {
-            logger.warn("Error procesando mensaje más reciente: {}", e.getMessage());
+            logger.error("Error extrayendo enlace y código para {}: {}", email, e.getMessage());
+            return Candidates.NONE;
         }
-
-        logger.warn("No se encontró enlace de hogar válido en el mensaje más reciente");
-        return null;
     }
 
-    private String findTemporaryCodeRecent(Store store) throws MessagingException, IOException {
-        Folder inbox = store.getFolder("INBOX");
-        inbox.open(Folder.READ_ONLY);
-
-        logger.info("Buscando el mensaje MÁS RECIENTE para código temporal");
-
-        // Obtener TODOS los mensajes para encontrar el más reciente
-        Message[] allMessages = inbox.getMessages();
-
-        if (allMessages.length == 0) {
-            logger.warn("No hay mensajes en la bandeja");
-            inbox.close(false);
+    private CompletableFuture<String> validateHomeLink(String link) {
+        Timer.Sample sample = extractionMetrics.start();
+        return netflixMessageAnalyzer.validateNetflixHomeLinkAsync(link).whenComplete((valid, error) ->
+                extractionMetrics.stopStage(sample, ExtractionMetrics.STAGE_HTTP_VALIDATE, NETFLIX_PROVIDER, ExtractionKind.LINK,
+                        error != null ? ExtractionMetrics.OUTCOME_ERROR
+                                : valid ? ExtractionMetrics.OUTCOME_SUCCESS : ExtractionMetrics.OUTCOME_EMPTY)
+        ).thenApply(valid -> {
+            if (valid) {
+                logger.info("ENLACE VALIDADO");
+                return link;
+            }
+            logger.warn("Enlace no es válido: sin botón 'Confirmar actualización'");
             return null;
-        }
-
-        // El último mensaje es el más reciente
-        Message mostRecentMessage = allMessages[allMessages.length - 1];
-
-        logger.info("Analizando ÚNICAMENTE el mensaje más reciente para código: #{} de {} total",
-                allMessages.length, allMessages.length);
-
-        String result = processLastMessageForCode(mostRecentMessage);
-
-        inbox.close(false);
-        return result;
+        });
     }
 
-    private String processLastMessageForCode(Message msg) throws MessagingException, IOException {
+    // Lectura IMAP bloqueante: URL del botón "Obtener código" más reciente según el cursor
+    private Candidate findCodeUrlCandidate(String email) {
         try {
-            String subject = msg.getSubject();
-            Date receivedDate = msg.getReceivedDate();
-            logger.info("Analizando mensaje MÁS RECIENTE para código - Asunto: {} - Fecha: {}",
-                    subject != null ? subject : "Sin asunto",
-                    receivedDate != null ? receivedDate : "Sin fecha");
+            Optional<EmailCredentials> credentialsOpt = lookupCredentials(email, ExtractionKind.CODE);
+            if (credentialsOpt.isEmpty()) {
+                logger.warn("Credenciales no encontradas para: {}", email);
+                return null;
+            }
 
-            String content = extractMessageContent(msg);
+            EmailCredentials credentials = credentialsOpt.get();
+            String decryptedPassword = decrypt(credentials, ExtractionKind.CODE);
 
-            if (content != null && isTemporaryCodeContent(content)) {
-                logger.info("EMAIL DE CODIGO TEMPORAL DETECTADO en mensaje más reciente");
-                String codeUrl = findTemporaryCodeUrl(content);
-                if (codeUrl != null) {
-                    return extractCodeFromUrl(codeUrl);
-                }
-            } else {
-                logger.info("El mensaje más reciente NO es de código temporal");
+            MailboxCursor cursor = readMailbox(credentials, decryptedPassword, ExtractionKind.CODE);
+
+            String codeUrl = recentOrNull(cursor.getLastCodeUrl(), cursor.getLastCodeReceivedAt());
+            if (codeUrl == null) {
+                logger.warn("No se encontró correo reciente de código temporal");
+                return null;
             }
+
+            logger.info("Obteniendo código temporal del mensaje UID {}", cursor.getLastCodeUid());
+            return new Candidate(codeUrl, cursor.getLastCodeUid(), cursor.getLastCodeReceivedAt());
+
         } catch (Exception e) {
-            logger.warn("Error procesando mensaje más reciente para código: {}", e.getMessage());
+            logger.error("Error extrayendo codigo temporal para {}: {}", email, e.getMessage());
+            return null;
         }
-
-        logger.warn("No se encontró código temporal en el mensaje más reciente");
-        return null;
     }
 
-    private String extractMessageContent(Message message) throws MessagingException, IOException {
-        StringBuilder content = new StringBuilder();
+    private CompletableFuture<String> extractCode(String codeUrl) {
+        Timer.Sample sample = extractionMetrics.start();
+        return netflixMessageAnalyzer.extractCodeFromUrlAsync(codeUrl).whenComplete((code, error) ->
+                extractionMetrics.stopStage(sample, ExtractionMetrics.STAGE_HTTP_VALIDATE, NETFLIX_PROVIDER, ExtractionKind.CODE,
+                        error != null ? ExtractionMetrics.OUTCOME_ERROR : outcomeOf(code)));
+    }
 
-        if (message.isMimeType("text/html")) {
-            content.append((String) message.getContent());
-        } else if (message.isMimeType("text/plain")) {
-            content.append((String) message.getContent());
-        } else if (message.isMimeType("multipart/*")) {
-            Multipart multipart = (Multipart) message.getContent();
-            extractFromMultipart(multipart, content);
-        }
+    private Optional<EmailCredentials> lookupCredentials(String email, ExtractionKind kind) {
+        return extractionMetrics.stage(ExtractionMetrics.STAGE_CREDENTIALS, ExtractionMetrics.UNKNOWN_PROVIDER, kind,
+                () -> credentialsCacheService.findByEmail(email));
+    }
 
-        return content.toString();
+    private String decrypt(EmailCredentials credentials, ExtractionKind kind) {
+        return extractionMetrics.stage(ExtractionMetrics.STAGE_DECRYPT, credentials.getProvider(), kind,
+                () -> credentialsCacheService.decryptPassword(credentials.getEncryptedPassword()));
     }
 
-    private void extractFromMultipart(Multipart multipart, StringBuilder content) throws MessagingException, IOException {
-        for (int i = 0; i < multipart.getCount(); i++) {
-            BodyPart bodyPart = multipart.getBodyPart(i);
+    // Incluye tanto reutilizar una conexión del pool (NOOP) como abrir una nueva (TLS + LOGIN)
+    private ImapConnectionPool.Lease borrow(ImapConnectionPool.Reservation reservation, EmailCredentials credentials,
+                                            String decryptedPassword, ExtractionKind kind) throws MessagingException {
+        return extractionMetrics.stage(ExtractionMetrics.STAGE_CONNECT, credentials.getProvider(), kind,
+                () -> reservation.lease(decryptedPassword));
+    }
 
-            if (bodyPart.isMimeType("text/html")) {
-                content.append(bodyPart.getContent().toString());
-                break;
-            } else if (bodyPart.isMimeType("text/plain") && content.length() == 0) {
-                content.append(bodyPart.getContent().toString());
-            } else if (bodyPart.isMimeType("multipart/*")) {
-                extractFromMultipart((Multipart) bodyPart.getContent(), content);
-            }
+    // El hueco del buzón se reserva antes de entrar al límite por proveedor: un buzón ocupado
+    // (doble clic, reintentos) no ocupa cupo del servidor ni cuenta como llamada lenta
+    private MailboxCursor readMailbox(EmailCredentials credentials, String decryptedPassword, ExtractionKind kind)
+            throws MessagingException, IOException {
+        try (ImapConnectionPool.Reservation reservation = imapConnectionPool.reserve(credentials)) {
+            return imapHostGuard.execute(credentials.getImapHost(), () -> {
+                try (ImapConnectionPool.Lease lease = borrow(reservation, credentials, decryptedPassword, kind)) {
+                    try {
+                        return readLeasedMailbox(lease, credentials, kind);
+                    } catch (MessagingException e) {
+                        // La conexión que acaba de fallar no vuelve al pool
+                        lease.invalidate();
+                        throw e;
+                    }
+                }
+            });
         }
     }
 
-    private String findNetflixUrlInContent(String content) {
-        if (content == null || content.isEmpty()) {
-            return null;
+    private MailboxCursor readLeasedMailbox(ImapConnectionPool.Lease lease, EmailCredentials credentials, ExtractionKind kind)
+            throws MessagingException {
+        ImapConnectionPool.InboxStatus status = statusCheckEnabled
+                ? extractionMetrics.stage(ExtractionMetrics.STAGE_STATUS, credentials.getProvider(), kind, lease::getInboxStatus)
+                : null;
+        MailboxSnapshot previous = snapshots.getIfPresent(credentials.getId());
+        if (status != null && previous != null && previous.status().equals(status)) {
+            logger.info("Buzón sin cambios según STATUS (UIDNEXT {}): se reutiliza la clasificación", status.uidNext());
+            return previous.cursor();
         }
 
-        // OPTIMIZACIÓN: Patrones más específicos basados en tu captura de pantalla
-        Pattern specificPattern = Pattern.compile(
-                "https?://(?:www\\.)?netflix\\.com/[^\\s\"'<>)]*(?:household|manage|actualizar|update|hogar|verify|confirm)[^\\s\"'<>)]*",
-                Pattern.CASE_INSENSITIVE
-        );
-
-        Matcher specificMatcher = specificPattern.matcher(content);
-        while (specificMatcher.find()) {
-            String url = specificMatcher.group();
-            if (isRelevantNetflixUrl(url)) {
-                logger.info("URL específica de hogar encontrada");
-                return url;
-            }
+        Folder inbox = extractionMetrics.stage(ExtractionMetrics.STAGE_FOLDER_OPEN, credentials.getProvider(), kind,
+                lease::getInbox);
+        MailboxCursor cursor = advanceCursor(credentials, (IMAPFolder) inbox, kind);
+        // Se guarda el STATUS previo a la lectura: si llegó correo entretanto, el siguiente no coincidirá
+        if (status != null) {
+            snapshots.put(credentials.getId(), new MailboxSnapshot(status, cursor));
         }
+        return cursor;
+    }
 
-        // Patrón de respaldo para href
-        Pattern hrefPattern = Pattern.compile(
-                "href=[\"'](https?://[^\"']*netflix\\.com[^\"']*(?:household|hogar|update|actualizar|manage)[^\"']*)[\"']",
-                Pattern.CASE_INSENSITIVE
-        );
-
-        Matcher hrefMatcher = hrefPattern.matcher(content);
-        if (hrefMatcher.find()) {
-            String url = hrefMatcher.group(1);
-            if (isRelevantNetflixUrl(url)) {
-                logger.info("URL de hogar en href encontrada");
-                return url;
-            }
+    // OPTIMIZACIÓN: Las siguientes peticiones del mismo buzón se responden desde memoria hasta que el enlace caduque
+    private String remember(String email, ExtractionKind kind, String value, Candidate candidate) {
+        if (value != null) {
+            extractionResultStore.put(email, kind, value, candidate.uid(), candidate.receivedAt());
         }
+        return value;
+    }
 
-        logger.debug("No se encontraron URLs específicas de actualizar hogar");
-        return null;
+    private String outcomeOf(String value) {
+        return value != null ? ExtractionMetrics.OUTCOME_SUCCESS : ExtractionMetrics.OUTCOME_EMPTY;
     }
 
-    // OPTIMIZACIÓN: Detección más específica basada en tu captura
-    private boolean isHomeUpdateContent(String content) {
-        String lowerContent = content.toLowerCase();
-
-        // Palabras clave específicas de la página que mostraste
-        String[] specificKeywords = {
-                "completa la actualización del hogar",
-                "confirma que quieres configurar tu hogar",
-                "actualización podría limitar",
-                "dispositivos que no sean parte del hogar"
-        };
-
-        // Si encuentra cualquier frase específica, es definitivamente un email de hogar
-        for (String specific : specificKeywords) {
-            if (lowerContent.contains(specific)) {
-                logger.info("Email de hogar confirmado por frase específica: {}", specific);
-                return true;
+    // OPTIMIZACIÓN: Cursor por UID persistido; en cada petición solo se clasifican los correos nuevos
+    private MailboxCursor advanceCursor(EmailCredentials credentials, IMAPFolder inbox, ExtractionKind kind)
+            throws MessagingException {
+        String provider = credentials.getProvider();
+        MailboxCursor cursor = mailboxCursorRepository.findByCredentialsId(credentials.getId())
+                .orElseGet(() -> new MailboxCursor(credentials.getId()));
+
+        long uidValidity = inbox.getUIDValidity();
+        Message[] candidates;
+        long lastUid;
+
+        if (cursor.getLastUid() == null || cursor.getUidValidity() == null || cursor.getUidValidity() != uidValidity) {
+            logger.info("Cursor nuevo o UIDVALIDITY cambiado: reescaneando buzón");
+            cursor.reset(uidValidity);
+            extractionResultStore.invalidate(credentials.getEmail());
+
+            int total = inbox.getMessageCount();
+            lastUid = total > 0 ? inbox.getUID(inbox.getMessage(total)) : 0;
+            candidates = extractionMetrics.stage(ExtractionMetrics.STAGE_FETCH, provider, kind,
+                    () -> searchRecentNetflixMessages(inbox, null));
+        } else {
+            long previousUid = cursor.getLastUid();
+            Message[] fresh = extractionMetrics.stage(ExtractionMetrics.STAGE_FETCH, provider, kind,
+                    () -> newMessagesSince(inbox, previousUid));
+            if (fresh.length == 0) {
+                logger.info("Sin correos nuevos desde UID {}", cursor.getLastUid());
+                return cursor;
             }
+
+            logger.info("{} correos nuevos desde UID {}", fresh.length, cursor.getLastUid());
+            lastUid = inbox.getUID(fresh[fresh.length - 1]);
+            candidates = extractionMetrics.stage(ExtractionMetrics.STAGE_FETCH, provider, kind,
+                    () -> searchRecentNetflixMessages(inbox, fresh));
         }
 
-        // Fallback a palabras generales
-        String[] requiredKeywords = {"hogar", "actualizar", "household", "solicitud", "dispositivos"};
-        int keywordCount = 0;
-        for (String keyword : requiredKeywords) {
-            if (lowerContent.contains(keyword)) {
-                keywordCount++;
+        // Del más reciente al más antiguo; se para cuando ya no puede haber nada más nuevo
+        for (Message candidate : candidates) {
+            long uid = inbox.getUID(candidate);
+            boolean needsHome = cursor.getLastHomeLinkUid() == null || uid > cursor.getLastHomeLinkUid();
+            boolean needsCode = cursor.getLastCodeUid() == null || uid > cursor.getLastCodeUid();
+            if (!needsHome && !needsCode) {
+                break;
             }
+            classifyMessage(credentials.getEmail(), cursor, candidate, uid, needsHome, needsCode, provider, kind);
         }
 
-        boolean isRelevant = keywordCount >= 3; // Aumentado de 2 a 3 para mayor precisión
-        logger.debug("Contenido de hogar por palabras generales: {} ({}/{})",
-                isRelevant, keywordCount, requiredKeywords.length);
-
-        return isRelevant;
+        cursor.setLastUid(lastUid);
+        cursor.setUpdatedAt(Instant.now());
+        try {
+            return mailboxCursorRepository.save(cursor);
+        } catch (DataIntegrityViolationException e) {
+            // Otra petición concurrente creó el cursor primero; se actualizará en la siguiente
+            logger.debug("Cursor de {} guardado por otra petición", credentials.getEmail());
+            return cursor;
+        }
     }
 
-    private boolean isRelevantNetflixUrl(String url) {
-        String lowerUrl = url.toLowerCase();
-        return lowerUrl.contains("household") ||
-                lowerUrl.contains("manage") ||
-                lowerUrl.contains("update") ||
-                lowerUrl.contains("hogar") ||
-                lowerUrl.contains("actualizar") ||
-                lowerUrl.contains("verify") ||
-                lowerUrl.contains("confirm");
-    }
+    private void classifyMessage(String email, MailboxCursor cursor, Message msg, long uid, boolean needsHome, boolean needsCode,
+                                 String provider, ExtractionKind kind) {
+        try {
+            String subject = msg.getSubject();
+            Date receivedDate = msg.getReceivedDate();
+            logger.info("Clasificando mensaje UID {} - Asunto: {} - Fecha: {}", uid,
+                    subject != null ? subject : "Sin asunto",
+                    receivedDate != null ? receivedDate : "Sin fecha");
+
+            Instant receivedAt = receivedDate != null ? receivedDate.toInstant() : Instant.now();
+            // Descarga y decodificación MIME del cuerpo
+            String content = extractionMetrics.stage(ExtractionMetrics.STAGE_FETCH, provider, kind,
+                    () -> netflixMessageAnalyzer.extractMessageContent(msg));
+            if (content == null || content.isEmpty()) {
+                return;
+            }
 
-    private boolean isTemporaryCodeContent(String content) {
-        String lowerContent = content.toLowerCase();
-        String[] codeKeywords = {"codigo", "temporal", "acceso", "obtener", "dispositivo", "ver netflix"};
+            // Un único recorrido del cuerpo alimenta todas las reglas de clasificación
+            NetflixContentScan scan = extractionMetrics.stage(ExtractionMetrics.STAGE_CLASSIFY, provider, kind,
+                    () -> netflixMessageAnalyzer.scanContent(content));
 
-        int keywordCount = 0;
-        for (String keyword : codeKeywords) {
-            if (lowerContent.contains(keyword)) {
-                keywordCount++;
+            if (needsHome && netflixMessageAnalyzer.isHomeUpdateContent(scan)) {
+                String link = extractionMetrics.stage(ExtractionMetrics.STAGE_URL_EXTRACT, provider, kind,
+                        () -> netflixMessageAnalyzer.findNetflixUrlInContent(scan));
+                if (link != null) {
+                    logger.info("EMAIL DE HOGAR DETECTADO en UID {}", uid);
+                    cursor.recordHomeLink(link, uid, receivedAt);
+                } else {
+                    extractionResultStore.invalidateOlderThan(email, ExtractionKind.LINK, uid);
+                }
+            } else if (needsCode && netflixMessageAnalyzer.isTemporaryCodeContent(scan)) {
+                String codeUrl = extractionMetrics.stage(ExtractionMetrics.STAGE_URL_EXTRACT, provider, kind,
+                        () -> netflixMessageAnalyzer.findTemporaryCodeUrl(scan));
+                if (codeUrl != null) {
+                    logger.info("EMAIL DE CODIGO TEMPORAL DETECTADO en UID {}", uid);
+                    cursor.recordCodeUrl(codeUrl, uid, receivedAt);
+                } else {
+                    extractionResultStore.invalidateOlderThan(email, ExtractionKind.CODE, uid);
+                }
             }
+        } catch (Exception e) {
+            logger.warn("Error clasificando mensaje UID {}: {}", uid, e.getMessage());
         }
-
-        return keywordCount >= 2;
     }
 
-    private String findTemporaryCodeUrl(String content) {
-        Pattern codeButtonPattern = Pattern.compile(
-                "href=[\"'](https?://[^\"']*netflix\\.com[^\"']*)[\"'][^>]*>\\s*(?:Obtener\\s+codigo|Obtener|Get\\s+code)",
-                Pattern.CASE_INSENSITIVE | Pattern.DOTALL
-        );
+    private Message[] newMessagesSince(IMAPFolder inbox, long lastUid) throws MessagingException {
+        Message[] range = inbox.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+        // "n:*" siempre devuelve al menos el último mensaje, aunque sea antiguo
+        return Arrays.stream(range)
+                .filter(message -> uidOf(inbox, message) > lastUid)
+                .toArray(Message[]::new);
+    }
 
-        Matcher codeButtonMatcher = codeButtonPattern.matcher(content);
-        if (codeButtonMatcher.find()) {
-            return codeButtonMatcher.group(1);
+    private long uidOf(IMAPFolder inbox, Message message) {
+        try {
+            return inbox.getUID(message);
+        } catch (MessagingException e) {
+            return -1;
         }
+    }
 
-        Pattern codePattern = Pattern.compile(
-                "href=[\"'](https?://[^\"']*netflix\\.com[^\"']*(?:code|codigo|temporal|access)[^\"']*)[\"']",
-                Pattern.CASE_INSENSITIVE
-        );
-
-        Matcher codeMatcher = codePattern.matcher(content);
-        if (codeMatcher.find()) {
-            return codeMatcher.group(1);
+    // Las clasificaciones guardadas solo sirven mientras el correo siga siendo reciente
+    private String recentOrNull(String value, Instant receivedAt) {
+        if (value == null) {
+            return null;
         }
-
-        return null;
+        Instant since = Instant.now().minusSeconds(searchSinceMinutes * 60L);
+        return receivedAt == null || !receivedAt.isBefore(since) ? value : null;
     }
 
-    private String extractCodeFromUrl(String url) {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
-                    .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                    .GET()
-                    .build();
+    // OPTIMIZACIÓN: El servidor filtra (SEARCH) en lugar de crear un Message por cada correo de la bandeja
+    private Message[] searchRecentNetflixMessages(Folder inbox, Message[] scope) throws MessagingException {
+        Date since = new Date(System.currentTimeMillis() - searchSinceMinutes * 60_000L);
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        SearchTerm netflixTerm = new OrTerm(new FromStringTerm("netflix"), new SubjectTerm("netflix"));
+        SearchTerm recentTerm = new ReceivedDateTerm(ComparisonTerm.GE, since);
+        SearchTerm term = new AndTerm(netflixTerm, recentTerm);
+        Message[] found = scope == null ? inbox.search(term) : inbox.search(term, scope);
 
-            if (response.statusCode() == 200) {
-                return extractFourDigitCode(response.body());
-            }
-        } catch (Exception e) {
-            logger.error("Error obteniendo codigo: {}", e.getMessage());
+        // SEARCH devuelve en orden ascendente; nos quedamos con la ventana más reciente
+        int windowSize = Math.min(found.length, searchMaxResults);
+        Message[] window = new Message[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            window[i] = found[found.length - 1 - i];
         }
-        return null;
-    }
 
-    private String extractFourDigitCode(String pageContent) {
-        // Patrón para código sin espacios (como en tu captura: "2830")
-        Pattern noSpacePattern = Pattern.compile(
-                "usa\\s+este\\s+c[óo]digo\\s+para\\s+ver\\s+netflix[^\\d]*(\\d{4})",
-                Pattern.CASE_INSENSITIVE | Pattern.DOTALL
-        );
-        Matcher noSpaceMatcher = noSpacePattern.matcher(pageContent);
-        if (noSpaceMatcher.find()) {
-            return noSpaceMatcher.group(1);
-        }
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.ENVELOPE);
+        inbox.fetch(window, profile);
 
-        // Patrón para código con espacios (como respaldo)
-        Pattern spacedPattern = Pattern.compile(
-                "ingresa\\s+este\\s+c[óo]digo[^\\d]*(\\d)\\s+(\\d)\\s+(\\d)\\s+(\\d)",
-                Pattern.CASE_INSENSITIVE | Pattern.DOTALL
-        );
-        Matcher spacedMatcher = spacedPattern.matcher(pageContent);
-        if (spacedMatcher.find()) {
-            return spacedMatcher.group(1) + spacedMatcher.group(2) +
-                    spacedMatcher.group(3) + spacedMatcher.group(4);
-        }
-        return null;
+        // SINCE en IMAP tiene resolución de días: se afina con la fecha exacta de recepción
+        return Arrays.stream(window)
+                .filter(message -> isReceivedAfter(message, since))
+                .toArray(Message[]::new);
     }
 
-    // OPTIMIZACIÓN: Validación más eficiente con timeout corto
-    private boolean validateNetflixHomeLinkOptimized(String url) {
+    private boolean isReceivedAfter(Message message, Date since) {
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(8)) // Timeout reducido
-                    .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                // OPTIMIZACIÓN: Usar búsqueda de texto simple antes de parsear HTML
-                String bodyLower = response.body().toLowerCase();
-
-                if (bodyLower.contains("confirmar actualización") ||
-                        bodyLower.contains("confirm update") ||
-                        bodyLower.contains("completa la actualización del hogar")) {
-                    logger.debug("Validación rápida exitosa por contenido de texto");
-                    return true;
-                }
+            Date receivedDate = message.getReceivedDate();
+            return receivedDate == null || !receivedDate.before(since);
+        } catch (MessagingException e) {
+            return true;
+        }
+    }
 
-                // Solo parsear HTML si la búsqueda rápida no funciona
-                Document doc = Jsoup.parse(response.body());
-                Elements buttons = doc.select("button, a, input[type=submit]");
+    // Valor leído del buzón junto con el correo del que sale, para saber cuándo caduca
+    private record Candidate(String value, long uid, Instant receivedAt) {}
 
-                for (Element btn : buttons) {
-                    String text = btn.text().trim().toLowerCase();
-                    if (text.contains("confirmar actualización") ||
-                            text.contains("confirmar") && text.contains("hogar")) {
-                        logger.debug("Botón de confirmación detectado en HTML");
-                        return true;
-                    }
-                }
-            } else {
-                logger.warn("HTTP {}: Enlace posiblemente expirado", response.statusCode());
-            }
-        } catch (Exception e) {
-            logger.error("Error validando enlace Netflix: {}", e.getMessage());
-        }
-        return false;
+    // La clasificación guardada solo se lee: advanceCursor siempre parte del cursor de la base de datos
+    private record MailboxSnapshot(ImapConnectionPool.InboxStatus status, MailboxCursor cursor) {}
+
+    private record Candidates(Candidate link, Candidate code) {
+        private static final Candidates NONE = new Candidates(null, null);
     }
-}
\ No newline at end of file
+}
@@ -1,52 +1,142 @@
 package backend.consutalar_correo.services.serviceImpl;
 
-;
 import backend.consutalar_correo.services.EncryptionService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @Service
 public class EncryptionServiceImpl implements EncryptionService {
 
     private static final String ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES";
+    // Formato antiguo: AES/ECB sin IV ni autenticación, solo se usa para leer filas existentes
+    private static final String LEGACY_TRANSFORMATION = "AES";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    // Formato actual: "v2:" + Base64(IV de 12 bytes + texto cifrado + tag de 16 bytes)
+    private static final String V2_PREFIX = "v2:";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int KEY_DERIVATION_ITERATIONS = 210_000;
 
-    @Value("${app.encryption.secret:myDefaultSecretKey123456}")
-    private String encryptionSecret;
+    // OPTIMIZACIÓN: Claves derivadas una sola vez al arrancar, no en cada llamada
+    private final SecretKeySpec legacyKey;
+    private final SecretKeySpec gcmKey;
 
-    private SecretKeySpec getSecretKey() {
+    // OPTIMIZACIÓN: Instancias de Cipher reutilizables; un pool y no un ThreadLocal porque
+    // las peticiones corren en hilos virtuales que no se reutilizan
+    private final Queue<Cipher> gcmCiphers = new ConcurrentLinkedQueue<>();
+    private final Queue<Cipher> legacyCiphers = new ConcurrentLinkedQueue<>();
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public EncryptionServiceImpl(@Value("${app.encryption.secret:myDefaultSecretKey123456}") String encryptionSecret,
+                                 @Value("${app.encryption.key-salt:actualizaHogar}") String keySalt) {
+        this.legacyKey = deriveLegacyKey(encryptionSecret);
+        this.gcmKey = deriveGcmKey(encryptionSecret, keySalt);
+    }
+
+    private static SecretKeySpec deriveLegacyKey(String secret) {
         // Usar los primeros 16 bytes del secret para AES-128
-        byte[] key = encryptionSecret.getBytes();
+        byte[] key = secret.getBytes();
         byte[] keyBytes = new byte[16];
         System.arraycopy(key, 0, keyBytes, 0, Math.min(key.length, keyBytes.length));
         return new SecretKeySpec(keyBytes, ALGORITHM);
     }
 
+    private static SecretKeySpec deriveGcmKey(String secret, String salt) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt.getBytes(StandardCharsets.UTF_8),
+                    KEY_DERIVATION_ITERATIONS, 256);
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            spec.clearPassword();
+            return new SecretKeySpec(key, ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo derivar la clave de cifrado", e);
+        }
+    }
+
     @Override
     public String encrypt(String plainText) {
+        Cipher cipher = null;
         try {
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, getSecretKey());
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes());
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
+
+            cipher = borrow(gcmCiphers, GCM_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, gcmKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+
+            byte[] payload = ByteBuffer.allocate(IV_LENGTH + encryptedBytes.length).put(iv).put(encryptedBytes).array();
+            return V2_PREFIX + Base64.getEncoder().encodeToString(payload);
         } catch (Exception e) {
             throw new RuntimeException("Error al cifrar la contraseña", e);
+        } finally {
+            release(gcmCiphers, cipher);
         }
     }
 
     @Override
     public String decrypt(String encryptedText) {
+        return encryptedText.startsWith(V2_PREFIX) ? decryptGcm(encryptedText) : decryptLegacy(encryptedText);
+    }
+
+    @Override
+    public boolean needsUpgrade(String encryptedText) {
+        return encryptedText != null && !encryptedText.startsWith(V2_PREFIX);
+    }
+
+    private String decryptGcm(String encryptedText) {
+        Cipher cipher = null;
         try {
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, getSecretKey());
+            byte[] payload = Base64.getDecoder().decode(encryptedText.substring(V2_PREFIX.length()));
+
+            cipher = borrow(gcmCiphers, GCM_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, gcmKey, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, IV_LENGTH));
+            // Si el texto fue alterado el tag no coincide y doFinal lanza AEADBadTagException
+            byte[] decryptedBytes = cipher.doFinal(payload, IV_LENGTH, payload.length - IV_LENGTH);
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException("Error al descifrar la contraseña", e);
+        } finally {
+            release(gcmCiphers, cipher);
+        }
+    }
+
+    private String decryptLegacy(String encryptedText) {
+        Cipher cipher = null;
+        try {
+            cipher = borrow(legacyCiphers, LEGACY_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, legacyKey);
             byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedText));
-            return new String(decryptedBytes);
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Error al descifrar la contraseña", e);
+        } finally {
+            release(legacyCiphers, cipher);
+        }
+    }
+
+    private Cipher borrow(Queue<Cipher> pool, String transformation) throws GeneralSecurityException {
+        Cipher cipher = pool.poll();
+        return cipher != null ? cipher : Cipher.getInstance(transformation);
+    }
+
+    // Cada uso vuelve a llamar a init (IV nuevo en GCM), así que un Cipher devuelto tras un error sigue siendo válido
+    private void release(Queue<Cipher> pool, Cipher cipher) {
+        if (cipher != null) {
+            pool.offer(cipher);
         }
     }
 }
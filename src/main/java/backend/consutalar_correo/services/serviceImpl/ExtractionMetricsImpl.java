@@ -0,0 +1,90 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.services.ExtractionMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+@Service
+public class ExtractionMetricsImpl implements ExtractionMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public <T, E extends Exception> T stage(String stage, String provider, ExtractionKind kind, StageCall<T, E> call) throws E {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            T result = call.call();
+            stopStage(sample, stage, provider, kind, result == null ? OUTCOME_EMPTY : OUTCOME_SUCCESS);
+            return result;
+        } catch (Exception e) {
+            stopStage(sample, stage, provider, kind, OUTCOME_ERROR);
+            throw e;
+        }
+    }
+
+    @Override
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    @Override
+    public void stopStage(Timer.Sample sample, String stage, String provider, ExtractionKind kind, String outcome) {
+        // Los Timer se registran una vez por combinación de tags; después el registro devuelve el existente
+        sample.stop(Timer.builder("netflix.extraction.stage")
+                .description("Duración de cada etapa de la extracción")
+                .tag("stage", stage)
+                .tag("provider", provider != null ? provider.toUpperCase() : UNKNOWN_PROVIDER)
+                .tag("kind", kindTag(kind))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry));
+    }
+
+    @Override
+    public void stopRequest(Timer.Sample sample, ExtractionKind kind, String source, String outcome) {
+        sample.stop(Timer.builder("netflix.extraction.request")
+                .description("Duración total de la extracción por petición")
+                .tag("kind", kindTag(kind))
+                .tag("source", source)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry));
+    }
+
+    @Override
+    public void storeLookup(ExtractionKind kind, boolean hit) {
+        Counter.builder("netflix.extraction.store.lookups")
+                .description("Consultas a los resultados pre-extraídos")
+                .tag("kind", kindTag(kind))
+                .tag("result", hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @Override
+    public void singleFlight(ExtractionKind kind, boolean coalesced) {
+        Counter.builder("netflix.extraction.singleflight")
+                .description("Extracciones iniciadas frente a llamadas unidas a una ya en curso")
+                .tag("kind", kindTag(kind))
+                .tag("result", coalesced ? "coalesced" : "leader")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private String kindTag(ExtractionKind kind) {
+        return kind != null ? kind.name().toLowerCase() : "none";
+    }
+}
@@ -0,0 +1,102 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.dtos.ExtractionResultEvent;
+import backend.consutalar_correo.services.ExtractionResultStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+@Service
+public class ExtractionResultStoreImpl implements ExtractionResultStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionResultStoreImpl.class);
+
+    // Los enlaces y códigos de Netflix caducan a los ~15 minutos de enviarse el correo
+    @Value("${app.results.link-validity-ms:900000}")
+    private long linkValidityMs;
+
+    @Value("${app.results.code-validity-ms:900000}")
+    private long codeValidityMs;
+
+    @Value("${app.results.max-entries:10000}")
+    private long maxEntries;
+
+    // Avisa a las suscripciones SSE abiertas para ese buzón
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private Cache<ResultKey, StoredResult> results;
+
+    @PostConstruct
+    public void init() {
+        // OPTIMIZACIÓN: Cada entrada caduca a la vez que el enlace real, no con un TTL fijo desde que se guardó
+        results = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(Expiry.writing((ResultKey key, StoredResult result) ->
+                        Duration.ofMillis(Math.max(0, result.expiresAt() - System.currentTimeMillis()))))
+                .build();
+    }
+
+    @Override
+    public void put(String email, ExtractionKind kind, String value, long messageUid, Instant receivedAt) {
+        Instant sentAt = receivedAt != null ? receivedAt : Instant.now();
+        long expiresAt = sentAt.toEpochMilli() + validityMs(kind);
+        if (expiresAt <= System.currentTimeMillis()) {
+            logger.debug("Resultado {} de {} ya caducado, no se guarda", kind, email);
+            return;
+        }
+
+        StoredResult candidate = new StoredResult(value, messageUid, expiresAt);
+        StoredResult stored = results.asMap().compute(new ResultKey(normalize(email), kind),
+                (key, existing) -> existing != null && existing.messageUid() > messageUid ? existing : candidate);
+
+        if (stored != candidate) {
+            logger.debug("Resultado {} de {} descartado: ya hay uno de un correo más nuevo", kind, email);
+            return;
+        }
+        logger.info("Resultado {} guardado en memoria para: {} (UID {})", kind, email, messageUid);
+        eventPublisher.publishEvent(new ExtractionResultEvent(email, kind, value));
+    }
+
+    @Override
+    public Optional<String> get(String email, ExtractionKind kind) {
+        StoredResult result = results.getIfPresent(new ResultKey(normalize(email), kind));
+        return Optional.ofNullable(result).map(StoredResult::value);
+    }
+
+    @Override
+    public void invalidateOlderThan(String email, ExtractionKind kind, long messageUid) {
+        results.asMap().computeIfPresent(new ResultKey(normalize(email), kind),
+                (key, existing) -> existing.messageUid() < messageUid ? null : existing);
+    }
+
+    @Override
+    public void invalidate(String email) {
+        String normalized = normalize(email);
+        results.asMap().keySet().removeIf(key -> key.email().equals(normalized));
+    }
+
+    private long validityMs(ExtractionKind kind) {
+        return kind == ExtractionKind.CODE ? codeValidityMs : linkValidityMs;
+    }
+
+    private String normalize(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    private record ResultKey(String email, ExtractionKind kind) {}
+
+    private record StoredResult(String value, long messageUid, long expiresAt) {}
+}
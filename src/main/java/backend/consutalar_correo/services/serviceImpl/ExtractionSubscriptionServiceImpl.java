@@ -0,0 +1,217 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.dtos.ExtractionResultEvent;
+import backend.consutalar_correo.dtos.NetflixLinkResponse;
+import backend.consutalar_correo.services.EmailProcessorService;
+import backend.consutalar_correo.services.ExtractionResultStore;
+import backend.consutalar_correo.services.ExtractionSubscriptionService;
+import backend.consutalar_correo.services.MailboxWatcherService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class ExtractionSubscriptionServiceImpl implements ExtractionSubscriptionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionSubscriptionServiceImpl.class);
+
+    @Autowired
+    private ExtractionResultStore extractionResultStore;
+
+    @Autowired
+    private MailboxWatcherService mailboxWatcherService;
+
+    @Autowired
+    private EmailProcessorService emailProcessorService;
+
+    @Value("${app.subscribe.timeout-ms:600000}")
+    private long timeoutMs;
+
+    @Value("${app.subscribe.max-subscriptions:500}")
+    private int maxSubscriptions;
+
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeSubscriptions = new AtomicInteger();
+
+    // Buzones con una comprobación IMAP en curso (evita solapar sondeos del mismo buzón)
+    private final Set<String> polling = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public SseEmitter subscribe(String email, String kind) {
+        String normalized = normalize(email);
+        Set<ExtractionKind> kinds = kindsOf(kind);
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+
+        // Si el resultado ya está en memoria se responde sin esperar
+        for (ExtractionKind wanted : kinds) {
+            Optional<String> stored = extractionResultStore.get(email, wanted);
+            if (stored.isPresent()) {
+                sendAndComplete(emitter, "result", toResponse(email, wanted, stored.get()));
+                return emitter;
+            }
+        }
+
+        if (activeSubscriptions.incrementAndGet() > maxSubscriptions) {
+            activeSubscriptions.decrementAndGet();
+            logger.warn("Límite de suscripciones alcanzado, se rechaza: {}", email);
+            sendAndComplete(emitter, "error",
+                    new NetflixLinkResponse(false, "Demasiadas suscripciones abiertas. Intenta nuevamente en unos minutos."));
+            return emitter;
+        }
+
+        Subscription subscription = new Subscription(email, kinds, emitter);
+        subscriptions.compute(normalized, (key, waiting) -> {
+            Set<Subscription> set = waiting != null ? waiting : ConcurrentHashMap.newKeySet();
+            set.add(subscription);
+            return set;
+        });
+        logger.info("Suscripción abierta para {} ({})", email, kind);
+
+        emitter.onCompletion(() -> remove(normalized, subscription));
+        emitter.onError(error -> remove(normalized, subscription));
+        emitter.onTimeout(() -> {
+            if (subscription.claim()) {
+                sendAndComplete(emitter, "timeout",
+                        new NetflixLinkResponse(false, "Tiempo de espera agotado sin recibir el correo de Netflix."));
+            }
+        });
+
+        // Un resultado publicado entre la primera consulta y el alta no llegó a esta suscripción
+        for (ExtractionKind wanted : kinds) {
+            Optional<String> stored = extractionResultStore.get(email, wanted);
+            if (stored.isPresent() && subscription.claim()) {
+                sendAndComplete(emitter, "result", toResponse(email, wanted, stored.get()));
+                return emitter;
+            }
+        }
+
+        // Buzones sin vigilancia IDLE: primera comprobación inmediata
+        if (!mailboxWatcherService.isWatching(email)) {
+            pollMailbox(normalized);
+        }
+        return emitter;
+    }
+
+    @EventListener
+    public void onExtractionResult(ExtractionResultEvent event) {
+        deliver(normalize(event.getEmail()), event.getKind(), event.getValue());
+    }
+
+    // Respaldo para buzones que la vigilancia IDLE no cubre (desactivada, límite alcanzado o reconectando)
+    @Scheduled(fixedDelayString = "${app.subscribe.poll-interval-ms:20000}")
+    public void pollUnwatchedMailboxes() {
+        for (String email : subscriptions.keySet()) {
+            if (!mailboxWatcherService.isWatching(email)) {
+                pollMailbox(email);
+            }
+        }
+    }
+
+    private void pollMailbox(String email) {
+        Set<ExtractionKind> wanted = EnumSet.noneOf(ExtractionKind.class);
+        subscriptions.getOrDefault(email, Set.of()).forEach(subscription -> wanted.addAll(subscription.kinds));
+        if (wanted.isEmpty() || !polling.add(email)) {
+            return;
+        }
+
+        CompletableFuture<Void> link = wanted.contains(ExtractionKind.LINK)
+                ? emailProcessorService.extractNetflixHomeLinkAsync(email)
+                        .thenAccept(result -> result.ifPresent(value -> deliver(email, ExtractionKind.LINK, value)))
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> code = wanted.contains(ExtractionKind.CODE)
+                ? emailProcessorService.extractTemporaryCodeAsync(email)
+                        .thenAccept(result -> result.ifPresent(value -> deliver(email, ExtractionKind.CODE, value)))
+                : CompletableFuture.completedFuture(null);
+
+        CompletableFuture.allOf(link, code).whenComplete((ignored, error) -> {
+            polling.remove(email);
+            if (error != null) {
+                logger.warn("Error comprobando buzón suscrito {}: {}", email, error.getMessage());
+            }
+        });
+    }
+
+    private void deliver(String email, ExtractionKind kind, String value) {
+        Set<Subscription> waiting = subscriptions.get(email);
+        if (waiting == null) {
+            return;
+        }
+        for (Subscription subscription : waiting) {
+            if (subscription.kinds.contains(kind) && subscription.claim()) {
+                logger.info("Enviando {} a suscripción de {}", kind, email);
+                sendAndComplete(subscription.emitter, "result", toResponse(subscription.email, kind, value));
+            }
+        }
+    }
+
+    private void remove(String email, Subscription subscription) {
+        // Alta y baja se hacen dentro de compute para no perder una suscripción al vaciar el conjunto
+        subscriptions.computeIfPresent(email, (key, waiting) -> {
+            if (waiting.remove(subscription)) {
+                activeSubscriptions.decrementAndGet();
+            }
+            return waiting.isEmpty() ? null : waiting;
+        });
+    }
+
+    private void sendAndComplete(SseEmitter emitter, String eventName, NetflixLinkResponse response) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(response));
+            emitter.complete();
+        } catch (Exception e) {
+            logger.debug("No se pudo enviar el evento SSE: {}", e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    private NetflixLinkResponse toResponse(String email, ExtractionKind kind, String value) {
+        return kind == ExtractionKind.CODE
+                ? new NetflixLinkResponse(true, value, email, true)
+                : new NetflixLinkResponse(true, value, email);
+    }
+
+    private Set<ExtractionKind> kindsOf(String kind) {
+        if (kind == null || "BOTH".equals(kind)) {
+            return EnumSet.allOf(ExtractionKind.class);
+        }
+        return EnumSet.of(ExtractionKind.valueOf(kind));
+    }
+
+    private String normalize(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    private static final class Subscription {
+        private final String email;
+        private final Set<ExtractionKind> kinds;
+        private final SseEmitter emitter;
+        private final AtomicBoolean answered = new AtomicBoolean();
+
+        private Subscription(String email, Set<ExtractionKind> kinds, SseEmitter emitter) {
+            this.email = email;
+            this.kinds = kinds;
+            this.emitter = emitter;
+        }
+
+        // Solo el primer resultado (o el timeout) responde a la suscripción
+        private boolean claim() {
+            return answered.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.ImapPoolProperties;
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.exception.ImapBusyException;
+import backend.consutalar_correo.services.ImapConnectionPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ImapConnectionPoolImpl implements ImapConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImapConnectionPoolImpl.class);
+
+    private static final String[] STATUS_ITEMS = {"MESSAGES", "UIDNEXT", "UIDVALIDITY"};
+    private static final String[] STATUS_ITEMS_CONDSTORE = {"MESSAGES", "UIDNEXT", "UIDVALIDITY", "HIGHESTMODSEQ"};
+
+    @Autowired
+    private ImapPoolProperties poolProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<PoolKey, MailboxPool> pools = new ConcurrentHashMap<>();
+
+    private Counter reusedBorrows;
+    private Counter createdBorrows;
+    private Counter busyBorrows;
+
+    @PostConstruct
+    public void registerMetrics() {
+        reusedBorrows = borrowCounter("reused");
+        createdBorrows = borrowCounter("created");
+        busyBorrows = borrowCounter("busy");
+
+        Gauge.builder("imap.pool.connections", pools, p -> p.values().stream().mapToInt(pool -> pool.idle.size()).sum())
+                .description("Conexiones IMAP del pool")
+                .tag("state", "idle")
+                .register(meterRegistry);
+        Gauge.builder("imap.pool.connections", pools, p -> p.values().stream().mapToInt(MailboxPool::active).sum())
+                .description("Conexiones IMAP del pool")
+                .tag("state", "active")
+                .register(meterRegistry);
+    }
+
+    private Counter borrowCounter(String result) {
+        return Counter.builder("imap.pool.borrows")
+                .description("Préstamos de conexiones IMAP según su origen")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Lease borrow(EmailCredentials credentials, String password) throws MessagingException {
+        try (Reservation reservation = reserve(credentials)) {
+            return reservation.lease(password);
+        }
+    }
+
+    @Override
+    public Reservation reserve(EmailCredentials credentials) throws MessagingException {
+        PoolKey key = new PoolKey(credentials.getId(), credentials.getImapHost(), credentials.getImapPort());
+        MailboxPool pool = pools.computeIfAbsent(key, k -> new MailboxPool(poolProperties.getMaxActivePerMailbox()));
+
+        acquirePermit(pool, credentials);
+        return new PoolReservation(pool, credentials);
+    }
+
+    // El hueco ya está reservado: si falla, lo libera la reserva al cerrarse
+    private Lease open(MailboxPool pool, EmailCredentials credentials, String password) throws MessagingException {
+        PooledConnection connection;
+        while ((connection = pool.idle.pollFirst()) != null) {
+            // Si la contraseña cambió, la sesión abierta pertenece al login anterior
+            if (!credentials.getEncryptedPassword().equals(connection.encryptedPassword)) {
+                logger.info("Contraseña actualizada para {}, reconectando", credentials.getEmail());
+                closeQuietly(connection);
+                continue;
+            }
+            if (isAlive(connection)) {
+                logger.debug("Reutilizando conexión IMAP para {}", credentials.getEmail());
+                reusedBorrows.increment();
+                return new PooledLease(pool, connection);
+            }
+            closeQuietly(connection);
+        }
+
+        Store store = openDedicated(credentials, password, poolProperties.getReadTimeoutMs());
+        createdBorrows.increment();
+        return new PooledLease(pool, new PooledConnection(store, credentials.getEncryptedPassword()));
+    }
+
+    @Override
+    public void invalidate(Long credentialsId) {
+        pools.forEach((key, pool) -> {
+            if (key.credentialsId().equals(credentialsId) && pools.remove(key, pool)) {
+                // Los préstamos en curso cierran su conexión al devolverla en lugar de volver al pool
+                pool.retired = true;
+                PooledConnection connection;
+                while ((connection = pool.idle.pollFirst()) != null) {
+                    closeQuietly(connection);
+                }
+            }
+        });
+    }
+
+    // Cierra las conexiones que llevan demasiado tiempo sin usarse
+    @Scheduled(fixedDelayString = "${app.imap.pool.eviction-interval-ms:60000}")
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+
+        for (MailboxPool pool : pools.values()) {
+            for (PooledConnection connection : pool.idle) {
+                if (now - connection.lastUsed > poolProperties.getIdleTimeoutMs() && pool.idle.remove(connection)) {
+                    closeQuietly(connection);
+                    evicted++;
+                }
+            }
+        }
+
+        if (evicted > 0) {
+            logger.info("Conexiones IMAP inactivas cerradas: {}", evicted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (MailboxPool pool : pools.values()) {
+            PooledConnection connection;
+            while ((connection = pool.idle.pollFirst()) != null) {
+                closeQuietly(connection);
+            }
+        }
+        pools.clear();
+    }
+
+    private void acquirePermit(MailboxPool pool, EmailCredentials credentials) throws MessagingException {
+        try {
+            if (!pool.permits.tryAcquire(poolProperties.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                busyBorrows.increment();
+                throw new ImapBusyException("Límite de conexiones IMAP alcanzado para " + credentials.getEmail());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImapBusyException("Interrumpido esperando conexión IMAP", e);
+        }
+    }
+
+    @Override
+    public Store openDedicated(EmailCredentials credentials, String password, int readTimeoutMs) throws MessagingException {
+        Properties props = new Properties();
+        props.put("mail.store.protocol", "imaps");
+        props.put("mail.imaps.host", credentials.getImapHost());
+        props.put("mail.imaps.port", credentials.getImapPort().toString());
+        props.put("mail.imaps.ssl.enable", "true");
+        props.put("mail.imaps.ssl.trust", "*");
+        props.put("mail.imaps.connectiontimeout", String.valueOf(poolProperties.getConnectionTimeoutMs()));
+        props.put("mail.imaps.timeout", String.valueOf(readTimeoutMs));
+        props.put("mail.imaps.writetimeout", String.valueOf(poolProperties.getWriteTimeoutMs()));
+        // OPTIMIZACIÓN: Los cuerpos se piden por bloques (FETCH BODY[x]<offset.size>)
+        props.put("mail.imaps.partialfetch", "true");
+        props.put("mail.imaps.fetchsize", "16384");
+        // OPTIMIZACIÓN: Cuerpos HTML comprimidos en el cable cuando el servidor lo permite
+        if (poolProperties.isCompressWhenSupported() && Boolean.TRUE.equals(credentials.getSupportsCompress())) {
+            props.put("mail.imaps.compress.enable", "true");
+        }
+
+        Session session = Session.getInstance(props);
+        Store store = session.getStore("imaps");
+
+        logger.debug("Abriendo conexión IMAP a {} ({})", credentials.getProvider(), credentials.getImapHost());
+        store.connect(credentials.getImapHost(), credentials.getEmail(), password);
+
+        return store;
+    }
+
+    // Comprobación con NOOP: también recoge los EXISTS de correos nuevos en la carpeta abierta
+    private boolean isAlive(PooledConnection connection) {
+        try {
+            if (connection.inbox != null && connection.inbox.isOpen()) {
+                ((IMAPFolder) connection.inbox).doCommand(protocol -> {
+                    protocol.noop();
+                    return null;
+                });
+                return true;
+            }
+            // IMAPStore.isConnected() envía un NOOP por la conexión del store
+            return connection.store.isConnected();
+        } catch (Exception e) {
+            logger.debug("Conexión IMAP descartada: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void closeQuietly(PooledConnection connection) {
+        try { if (connection.inbox != null && connection.inbox.isOpen()) connection.inbox.close(false); } catch (Exception ignored) {}
+        try { connection.store.close(); } catch (Exception ignored) {}
+    }
+
+    private record PoolKey(Long credentialsId, String host, Integer port) {}
+
+    private static final class MailboxPool {
+        private final Semaphore permits;
+        private final int maxActive;
+        private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+        // Credenciales borradas o cambiadas: el pool ya no está en el mapa y no acepta devoluciones
+        private volatile boolean retired;
+
+        private MailboxPool(int maxActive) {
+            this.permits = new Semaphore(maxActive);
+            this.maxActive = maxActive;
+        }
+
+        private int active() {
+            return maxActive - permits.availablePermits();
+        }
+    }
+
+    private static final class PooledConnection {
+        private final Store store;
+        private final String encryptedPassword;
+        private Folder inbox;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Store store, String encryptedPassword) {
+            this.store = store;
+            this.encryptedPassword = encryptedPassword;
+        }
+    }
+
+    private final class PoolReservation implements Reservation {
+        private final MailboxPool pool;
+        private final EmailCredentials credentials;
+        private boolean leased;
+        private boolean released;
+
+        private PoolReservation(MailboxPool pool, EmailCredentials credentials) {
+            this.pool = pool;
+            this.credentials = credentials;
+        }
+
+        @Override
+        public Lease lease(String password) throws MessagingException {
+            if (leased || released) {
+                throw new IllegalStateException("La reserva IMAP ya se ha usado");
+            }
+            Lease lease = open(pool, credentials, password);
+            leased = true;
+            return lease;
+        }
+
+        @Override
+        public void close() {
+            if (leased || released) {
+                return;
+            }
+            released = true;
+            pool.permits.release();
+        }
+    }
+
+    private final class PooledLease implements Lease {
+        private final MailboxPool pool;
+        private final PooledConnection connection;
+        private boolean broken;
+        private boolean released;
+
+        private PooledLease(MailboxPool pool, PooledConnection connection) {
+            this.pool = pool;
+            this.connection = connection;
+        }
+
+        @Override
+        public Store getStore() {
+            return connection.store;
+        }
+
+        // La bandeja queda abierta (READ_ONLY) mientras la conexión vive en el pool
+        @Override
+        public Folder getInbox() throws MessagingException {
+            if (connection.inbox == null || !connection.inbox.isOpen()) {
+                Folder inbox = connection.store.getFolder("INBOX");
+                inbox.open(Folder.READ_ONLY);
+                connection.inbox = inbox;
+            }
+            return connection.inbox;
+        }
+
+        @Override
+        public InboxStatus getInboxStatus() throws MessagingException {
+            if (connection.inbox != null && connection.inbox.isOpen()) {
+                return selectedInboxStatus((IMAPFolder) connection.inbox);
+            }
+            // Sin carpeta seleccionada el STATUS va por la conexión del store, sin SELECT
+            IMAPFolder folder = (IMAPFolder) connection.store.getFolder("INBOX");
+            return (InboxStatus) folder.doCommand(protocol -> {
+                boolean condstore = protocol.hasCapability("CONDSTORE");
+                Status status = protocol.status("INBOX", condstore ? STATUS_ITEMS_CONDSTORE : STATUS_ITEMS);
+                return new InboxStatus(status.total, status.uidnext, status.uidvalidity,
+                        condstore ? status.highestmodseq : -1);
+            });
+        }
+
+        // STATUS sobre la carpeta seleccionada no es fiable (RFC 3501 §6.3.10). El NOOP del préstamo
+        // ya entregó los EXISTS/EXPUNGE pendientes: basta el total y el UID del último mensaje,
+        // que solo cuesta un UID FETCH cuando ese mensaje es nuevo
+        private InboxStatus selectedInboxStatus(IMAPFolder inbox) throws MessagingException {
+            int total = inbox.getMessageCount();
+            long lastUid = total > 0 ? inbox.getUID(inbox.getMessage(total)) : 0;
+            return new InboxStatus(total, lastUid + 1, inbox.getUIDValidity(), -1);
+        }
+
+        @Override
+        public void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+
+            connection.lastUsed = System.currentTimeMillis();
+            if (broken || pool.retired || pool.idle.size() >= poolProperties.getMaxIdlePerMailbox()) {
+                closeQuietly(connection);
+            } else {
+                pool.idle.offerFirst(connection);
+                // invalidate() pudo vaciar el pool entre la comprobación y la devolución
+                if (pool.retired && pool.idle.remove(connection)) {
+                    closeQuietly(connection);
+                }
+            }
+            pool.permits.release();
+        }
+    }
+}
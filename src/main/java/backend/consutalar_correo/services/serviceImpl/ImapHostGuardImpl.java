@@ -0,0 +1,164 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.ImapHostGuardProperties;
+import backend.consutalar_correo.exception.ImapBusyException;
+import backend.consutalar_correo.services.ImapHostGuard;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+public class ImapHostGuardImpl implements ImapHostGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImapHostGuardImpl.class);
+
+    @Autowired
+    private ImapHostGuardProperties properties;
+
+    private CircuitBreakerRegistry circuitBreakers;
+
+    private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumCalls())
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallDurationThreshold(Duration.ofMillis(properties.getSlowCallDurationMs()))
+                .slowCallRateThreshold(properties.getSlowCallRateThreshold())
+                .waitDurationInOpenState(Duration.ofMillis(properties.getOpenStateWaitMs()))
+                .permittedNumberOfCallsInHalfOpenState(properties.getHalfOpenCalls())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                // Una contraseña mala o un buzón sin conexiones libres no dicen nada del servidor
+                .ignoreExceptions(AuthenticationFailedException.class, ImapBusyException.class)
+                .build();
+        circuitBreakers = CircuitBreakerRegistry.of(config);
+        circuitBreakers.getEventPublisher().onEntryAdded(added -> added.getAddedEntry().getEventPublisher()
+                .onStateTransition(event -> logger.warn("Circuit breaker {}: {}",
+                        event.getCircuitBreakerName(), event.getStateTransition())));
+    }
+
+    @Override
+    public <T> T execute(String imapHost, ImapCall<T> call) throws MessagingException, IOException {
+        String host = imapHost.toLowerCase();
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker("imap-" + host);
+
+        // OPTIMIZACIÓN: Falla al instante mientras el proveedor está caído en lugar de esperar los timeouts
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new ImapBusyException("Servidor IMAP no disponible temporalmente: " + host);
+        }
+
+        HostLimiter limiter = limiters.computeIfAbsent(host, key -> new HostLimiter(key, properties.getInitialLimit()));
+        try {
+            if (!limiter.acquire(properties.getAcquireTimeoutMs())) {
+                circuitBreaker.releasePermission();
+                throw new ImapBusyException("Servidor IMAP saturado: " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.releasePermission();
+            throw new ImapBusyException("Interrumpido esperando al servidor IMAP: " + host, e);
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            long elapsed = System.nanoTime() - start;
+            circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+            limiter.release(TimeUnit.NANOSECONDS.toMillis(elapsed), false);
+            return result;
+        } catch (MessagingException | IOException | RuntimeException e) {
+            long elapsed = System.nanoTime() - start;
+            circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, e);
+            limiter.release(TimeUnit.NANOSECONDS.toMillis(elapsed), isHostFailure(e));
+            throw e;
+        }
+    }
+
+    // Límite actual de un servidor (el inicial si aún no ha recibido llamadas)
+    int currentLimit(String imapHost) {
+        HostLimiter limiter = limiters.get(imapHost.toLowerCase());
+        return limiter != null ? limiter.currentLimit() : properties.getInitialLimit();
+    }
+
+    private boolean isHostFailure(Exception e) {
+        return !(e instanceof AuthenticationFailedException) && !(e instanceof ImapBusyException);
+    }
+
+    // AIMD: sube de uno en uno mientras el servidor responde rápido y recorta el límite ante lentitud o fallos
+    private final class HostLimiter {
+        private final String host;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private double limit;
+        private int inFlight;
+
+        private HostLimiter(String host, int initialLimit) {
+            this.host = host;
+            this.limit = initialLimit;
+        }
+
+        private int currentLimit() {
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean acquire(long timeoutMs) throws InterruptedException {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            lock.lock();
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(long latencyMs, boolean failed) {
+            lock.lock();
+            try {
+                int previous = (int) limit;
+                if (failed || latencyMs > properties.getLatencyThresholdMs()) {
+                    limit = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+                } else if (inFlight * 2 >= limit) {
+                    // Solo crece si el límite se está usando de verdad
+                    limit = Math.min(properties.getMaxLimit(), limit + 1);
+                }
+                inFlight--;
+                if ((int) limit != previous) {
+                    logger.info("Límite IMAP de {}: {} -> {}", host, previous, (int) limit);
+                }
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
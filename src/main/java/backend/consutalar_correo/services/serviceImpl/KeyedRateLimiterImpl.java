@@ -0,0 +1,127 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.RateLimitProperties;
+import backend.consutalar_correo.dtos.RateLimitScope;
+import backend.consutalar_correo.services.KeyedRateLimiter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class KeyedRateLimiterImpl implements KeyedRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyedRateLimiterImpl.class);
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<RateLimitScope, Cache<String, TokenBucket>> buckets = new EnumMap<>(RateLimitScope.class);
+    private final Map<RateLimitScope, RateLimitProperties.Bucket> configs = new EnumMap<>(RateLimitScope.class);
+
+    @PostConstruct
+    public void init() {
+        configs.put(RateLimitScope.EMAIL, rateLimitProperties.getEmail());
+        configs.put(RateLimitScope.CLIENT_IP, rateLimitProperties.getClientIp());
+        configs.put(RateLimitScope.PROVIDER, rateLimitProperties.getProvider());
+        configs.put(RateLimitScope.BATCH, rateLimitProperties.getBatch());
+        configs.put(RateLimitScope.VALIDATION, rateLimitProperties.getValidation());
+
+        configs.forEach((scope, config) -> {
+            // Un bucket sin uso durante un periodo completo está lleno: descartarlo no cambia el resultado
+            long idleMs = Math.max(rateLimitProperties.getIdleEvictMs(), config.getPeriodMs());
+            buckets.put(scope, Caffeine.newBuilder()
+                    .maximumSize(rateLimitProperties.getMaxKeysPerScope())
+                    .expireAfterAccess(Duration.ofMillis(idleMs))
+                    .build());
+            logger.info("Límite {}: {} solicitudes cada {} ms por clave", scope, config.getCapacity(), config.getPeriodMs());
+        });
+    }
+
+    @Override
+    public long tryAcquire(List<Key> keys) {
+        // Una misma clave puede repetirse (varios emails del mismo proveedor en un lote)
+        Map<Key, Integer> permits = new LinkedHashMap<>();
+        for (Key key : keys) {
+            permits.merge(key, 1, Integer::sum);
+        }
+
+        List<Map.Entry<TokenBucket, Integer>> taken = new ArrayList<>(permits.size());
+        for (Map.Entry<Key, Integer> entry : permits.entrySet()) {
+            RateLimitScope scope = entry.getKey().scope();
+            TokenBucket bucket = buckets.get(scope).get(entry.getKey().value(), k -> new TokenBucket(configs.get(scope)));
+
+            long waitNanos = bucket.tryConsume(entry.getValue());
+            if (waitNanos > 0) {
+                // Todo o nada: se devuelven los permisos ya tomados de las demás claves
+                taken.forEach(t -> t.getKey().refund(t.getValue()));
+                rejected(scope);
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            taken.add(Map.entry(bucket, entry.getValue()));
+        }
+        return 0;
+    }
+
+    private void rejected(RateLimitScope scope) {
+        Counter.builder("netflix.ratelimit.rejected")
+                .description("Solicitudes rechazadas por límite de frecuencia")
+                .tag("scope", scope.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // OPTIMIZACIÓN: Token bucket en forma GCRA: todo el estado es un único instante teórico de llegada
+    // en un AtomicLong, así que consumir es un CAS sin bloqueos ni hilos de recarga
+    private static final class TokenBucket {
+        private final long emissionNanos;
+        private final long burstNanos;
+        private final AtomicLong theoreticalArrival;
+
+        private TokenBucket(RateLimitProperties.Bucket config) {
+            int capacity = Math.max(1, config.getCapacity());
+            this.emissionNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(config.getPeriodMs()) / capacity);
+            this.burstNanos = emissionNanos * capacity;
+            // Un bucket nuevo empieza lleno
+            this.theoreticalArrival = new AtomicLong(System.nanoTime());
+        }
+
+        // Devuelve 0 si se consumen los permisos o los nanosegundos que faltan para tenerlos
+        private long tryConsume(int permits) {
+            long cost = emissionNanos * permits;
+            while (true) {
+                long now = System.nanoTime();
+                long current = theoreticalArrival.get();
+                long next = (current - now > 0 ? current : now) + cost;
+                long excess = next - now - burstNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        private void refund(int permits) {
+            theoreticalArrival.addAndGet(-emissionNanos * permits);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.MailboxWatcherProperties;
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.dtos.NetflixContentScan;
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.services.EncryptionService;
+import backend.consutalar_correo.services.ExtractionResultStore;
+import backend.consutalar_correo.services.ImapConnectionPool;
+import backend.consutalar_correo.services.MailboxWatcherService;
+import backend.consutalar_correo.services.NetflixMessageAnalyzer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class MailboxWatcherServiceImpl implements MailboxWatcherService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailboxWatcherServiceImpl.class);
+
+    @Autowired
+    private MailboxWatcherProperties watcherProperties;
+
+    @Autowired
+    private EmailCredentialsRepository emailCredentialsRepository;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private ImapConnectionPool imapConnectionPool;
+
+    @Autowired
+    private NetflixMessageAnalyzer netflixMessageAnalyzer;
+
+    @Autowired
+    private ExtractionResultStore extractionResultStore;
+
+    private final Map<Long, MailboxWatcher> watchers = new ConcurrentHashMap<>();
+
+    // Hilos de plataforma a propósito: IDLE bloquea minutos dentro de los synchronized de Jakarta Mail
+    // y en un hilo virtual mantendría ocupado su hilo portador todo ese tiempo
+    private final ExecutorService executor = Executors.newCachedThreadPool(daemonThreads("imap-watcher-"));
+
+    private final ScheduledExecutorService refresher =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("imap-idle-refresh-"));
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWatchers() {
+        if (!watcherProperties.isEnabled()) {
+            logger.info("Vigilancia IMAP desactivada");
+            return;
+        }
+
+        emailCredentialsRepository.findAll().forEach(this::watch);
+
+        long refreshMs = watcherProperties.getIdleRefreshMs();
+        refresher.scheduleWithFixedDelay(this::refreshIdle, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+        logger.info("Vigilancia IMAP iniciada para {} buzones", watchers.size());
+    }
+
+    @Override
+    public void watch(EmailCredentials credentials) {
+        if (!watcherProperties.isEnabled()) {
+            return;
+        }
+
+        // Un cambio de credenciales reinicia la vigilancia con el nuevo login
+        unwatch(credentials.getId());
+
+        if (watchers.size() >= watcherProperties.getMaxMailboxes()) {
+            logger.warn("Límite de buzones vigilados alcanzado, se omite: {}", credentials.getEmail());
+            return;
+        }
+
+        MailboxWatcher watcher = new MailboxWatcher(credentials);
+        watchers.put(credentials.getId(), watcher);
+        executor.execute(watcher);
+    }
+
+    @Override
+    public void unwatch(Long credentialsId) {
+        MailboxWatcher watcher = watchers.remove(credentialsId);
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    @Override
+    public boolean isWatching(String email) {
+        return watchers.values().stream()
+                .anyMatch(watcher -> watcher.connected && watcher.credentials.getEmail().equalsIgnoreCase(email));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchers.values().forEach(MailboxWatcher::stop);
+        watchers.clear();
+        refresher.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    // Interrumpe el IDLE en curso para que el servidor no lo corte por inactividad
+    private void refreshIdle() {
+        for (MailboxWatcher watcher : watchers.values()) {
+            watcher.touch();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class MailboxWatcher implements Runnable {
+        private final EmailCredentials credentials;
+        private volatile boolean running = true;
+        private volatile boolean connected;
+        private volatile Store store;
+        private volatile IMAPFolder inbox;
+        private long uidValidity;
+        private long lastUid;
+
+        private MailboxWatcher(EmailCredentials credentials) {
+            this.credentials = credentials;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    watchInbox();
+                } catch (Exception e) {
+                    if (running) {
+                        logger.warn("Vigilancia de {} interrumpida: {}", credentials.getEmail(), e.getMessage());
+                    }
+                } finally {
+                    connected = false;
+                    close();
+                }
+                pause(watcherProperties.getReconnectDelayMs());
+            }
+        }
+
+        private void watchInbox() throws MessagingException {
+            String password = encryptionService.decrypt(credentials.getEncryptedPassword());
+            // El timeout de lectura debe cubrir un IDLE completo
+            int readTimeoutMs = (int) (watcherProperties.getIdleRefreshMs() + 60000);
+
+            store = imapConnectionPool.openDedicated(credentials, password, readTimeoutMs);
+            IMAPFolder folder = (IMAPFolder) store.getFolder("INBOX");
+            folder.open(Folder.READ_ONLY);
+            inbox = folder;
+
+            // Solo se procesan correos que lleguen después de empezar a vigilar
+            if (folder.getUIDValidity() != uidValidity) {
+                if (uidValidity != 0) {
+                    // Los UID anteriores ya no son comparables con los nuevos
+                    extractionResultStore.invalidate(credentials.getEmail());
+                }
+                uidValidity = folder.getUIDValidity();
+                lastUid = Math.max(0, folder.getUIDNext() - 1);
+            }
+
+            boolean supportsIdle = ((IMAPStore) store).hasCapability("IDLE");
+            connected = true;
+            logger.info("Vigilando {} mediante {}", credentials.getEmail(), supportsIdle ? "IDLE" : "sondeo");
+
+            while (running && folder.isOpen()) {
+                if (supportsIdle) {
+                    folder.idle(true);
+                } else {
+                    pause(watcherProperties.getPollIntervalMs());
+                    folder.getMessageCount();
+                }
+                processNewMessages(folder);
+            }
+        }
+
+        private void processNewMessages(IMAPFolder folder) throws MessagingException {
+            Message[] fresh = folder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+            for (Message message : fresh) {
+                long uid = folder.getUID(message);
+                // "n:*" siempre devuelve al menos el último mensaje, aunque sea antiguo
+                if (uid <= lastUid) {
+                    continue;
+                }
+                lastUid = uid;
+                handleArrival(message, uid);
+            }
+        }
+
+        private void handleArrival(Message message, long uid) {
+            try {
+                String content = netflixMessageAnalyzer.extractMessageContent(message);
+                NetflixContentScan scan = netflixMessageAnalyzer.scanContent(content);
+                Instant receivedAt = message.getReceivedDate() != null ? message.getReceivedDate().toInstant() : null;
+
+                if (netflixMessageAnalyzer.isHomeUpdateContent(scan)) {
+                    String link = netflixMessageAnalyzer.findHomeLink(scan);
+                    if (link != null) {
+                        extractionResultStore.put(credentials.getEmail(), ExtractionKind.LINK, link, uid, receivedAt);
+                    } else {
+                        extractionResultStore.invalidateOlderThan(credentials.getEmail(), ExtractionKind.LINK, uid);
+                    }
+                    return;
+                }
+
+                if (netflixMessageAnalyzer.isTemporaryCodeContent(scan)) {
+                    String code = netflixMessageAnalyzer.findTemporaryCode(scan);
+                    if (code != null) {
+                        extractionResultStore.put(credentials.getEmail(), ExtractionKind.CODE, code, uid, receivedAt);
+                    } else {
+                        extractionResultStore.invalidateOlderThan(credentials.getEmail(), ExtractionKind.CODE, uid);
+                    }
+                }
+            } catch (Exception e) {
+                logger.warn("Error procesando correo nuevo de {}: {}", credentials.getEmail(), e.getMessage());
+            }
+        }
+
+        private void touch() {
+            Folder folder = inbox;
+            try {
+                if (folder != null && folder.isOpen()) {
+                    folder.getMessageCount();
+                }
+            } catch (Exception e) {
+                logger.debug("No se pudo renovar IDLE de {}: {}", credentials.getEmail(), e.getMessage());
+            }
+        }
+
+        private void stop() {
+            running = false;
+            close();
+        }
+
+        private void close() {
+            try { if (inbox != null && inbox.isOpen()) inbox.close(false); } catch (Exception ignored) {}
+            try { if (store != null) store.close(); } catch (Exception ignored) {}
+        }
+
+        private void pause(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+}
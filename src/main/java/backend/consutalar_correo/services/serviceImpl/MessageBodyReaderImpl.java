@@ -0,0 +1,92 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.services.MessageBodyReader;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimeUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+@Service
+public class MessageBodyReaderImpl implements MessageBodyReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBodyReaderImpl.class);
+
+    // Los correos de Netflix rondan los 50-100 KB de HTML; imágenes y adjuntos nunca se descargan
+    @Value("${app.mail.body.max-bytes:262144}")
+    private int maxBodyBytes = 262144;
+
+    @Override
+    public String readTextBody(Part part) throws MessagingException, IOException {
+        Part textPart = findTextPart(part);
+        if (textPart == null) {
+            return null;
+        }
+        return readBounded(textPart);
+    }
+
+    // OPTIMIZACIÓN: Se recorre la estructura (BODYSTRUCTURE en IMAP) sin descargar el contenido de las partes
+    private Part findTextPart(Part part) throws MessagingException, IOException {
+        if (Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())) {
+            return null;
+        }
+        if (part.isMimeType("text/html") || part.isMimeType("text/plain")) {
+            return part;
+        }
+        if (part.isMimeType("message/rfc822")) {
+            // Correo reenviado como adjunto
+            return findTextPart((Message) part.getContent());
+        }
+        if (part.isMimeType("multipart/*")) {
+            Multipart multipart = (Multipart) part.getContent();
+            Part plain = null;
+            for (int i = 0; i < multipart.getCount(); i++) {
+                Part found = findTextPart(multipart.getBodyPart(i));
+                if (found == null) {
+                    continue;
+                }
+                if (found.isMimeType("text/html")) {
+                    return found;
+                }
+                if (plain == null) {
+                    plain = found;
+                }
+            }
+            return plain;
+        }
+        return null;
+    }
+
+    // OPTIMIZACIÓN: Con partialfetch, IMAP descarga el cuerpo por bloques; se deja de leer al llegar al límite
+    private String readBounded(Part part) throws MessagingException, IOException {
+        try (InputStream in = part.getInputStream()) {
+            byte[] bytes = in.readNBytes(maxBodyBytes);
+            if (bytes.length == maxBodyBytes) {
+                logger.debug("Cuerpo truncado a {} bytes", maxBodyBytes);
+            }
+            return new String(bytes, charsetOf(part));
+        }
+    }
+
+    private Charset charsetOf(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            if (charset != null) {
+                return Charset.forName(MimeUtility.javaCharset(charset));
+            }
+        } catch (Exception e) {
+            logger.debug("Charset no reconocido, se usa UTF-8: {}", e.getMessage());
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,140 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Autómata Aho-Corasick: busca todas las palabras clave en una sola pasada, sin distinguir
+// mayúsculas y sin copiar el texto a minúsculas. Se compila una vez y es seguro entre hilos.
+public final class MultiPatternMatcher {
+
+    @FunctionalInterface
+    public interface MatchListener {
+        // end es la posición (exclusiva) donde termina la coincidencia en el texto
+        void onMatch(int keywordIndex, int end);
+    }
+
+    private final String[] keywords;
+    private final int[] latinClass = new int[256];
+    private final Map<Character, Integer> otherClass = new HashMap<>();
+    private final int[][] transitions;
+    private final int[][] outputs;
+
+    public MultiPatternMatcher(List<String> keywords) {
+        this.keywords = keywords.stream().map(k -> k.toLowerCase(Locale.ROOT)).toArray(String[]::new);
+
+        // Alfabeto reducido: solo los caracteres que aparecen en alguna palabra clave
+        Arrays.fill(latinClass, -1);
+        int alphabetSize = 0;
+        for (String keyword : this.keywords) {
+            for (char c : keyword.toCharArray()) {
+                if (classOf(c) < 0) {
+                    if (c < 256) {
+                        // La mayúscula comparte clase: el recorrido no necesita convertir caracteres
+                        char upper = Character.toUpperCase(c);
+                        if (upper < 256) {
+                            latinClass[upper] = alphabetSize;
+                        }
+                        latinClass[c] = alphabetSize++;
+                    } else {
+                        otherClass.put(c, alphabetSize++);
+                    }
+                }
+            }
+        }
+
+        // 1) Trie
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        gotoTable.add(newRow(alphabetSize));
+        out.add(new ArrayList<>());
+        for (int k = 0; k < this.keywords.length; k++) {
+            int state = 0;
+            for (char c : this.keywords[k].toCharArray()) {
+                int cls = classOf(c);
+                if (gotoTable.get(state)[cls] < 0) {
+                    gotoTable.get(state)[cls] = gotoTable.size();
+                    gotoTable.add(newRow(alphabetSize));
+                    out.add(new ArrayList<>());
+                }
+                state = gotoTable.get(state)[cls];
+            }
+            out.get(state).add(k);
+        }
+
+        // 2) Enlaces de fallo por anchura, convirtiendo el trie en un autómata determinista
+        int[] failure = new int[gotoTable.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            int next = gotoTable.get(0)[cls];
+            if (next < 0) {
+                gotoTable.get(0)[cls] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            out.get(state).addAll(out.get(failure[state]));
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                int next = gotoTable.get(state)[cls];
+                if (next < 0) {
+                    gotoTable.get(state)[cls] = gotoTable.get(failure[state])[cls];
+                } else {
+                    failure[next] = gotoTable.get(failure[state])[cls];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = gotoTable.toArray(new int[0][]);
+        this.outputs = out.stream()
+                .map(list -> list.stream().distinct().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+    }
+
+    public static MultiPatternMatcher of(String... keywords) {
+        return new MultiPatternMatcher(List.of(keywords));
+    }
+
+    public String keyword(int index) {
+        return keywords[index];
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    public void scan(CharSequence text, MatchListener listener) {
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            int cls = c < 256 ? latinClass[c] : classOf(Character.toLowerCase(c));
+            // Un carácter fuera del alfabeto no puede formar parte de ninguna palabra clave
+            state = cls < 0 ? 0 : transitions[state][cls];
+            int[] matches = outputs[state];
+            for (int keywordIndex : matches) {
+                listener.onMatch(keywordIndex, i + 1);
+            }
+        }
+    }
+
+    private int classOf(char c) {
+        if (c < 256) {
+            return latinClass[c];
+        }
+        Integer cls = otherClass.get(c);
+        return cls != null ? cls : -1;
+    }
+
+    private static int[] newRow(int alphabetSize) {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,490 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.NetflixContentScan;
+import backend.consutalar_correo.services.MessageBodyReader;
+import backend.consutalar_correo.services.NetflixMessageAnalyzer;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Service
+public class NetflixMessageAnalyzerImpl implements NetflixMessageAnalyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetflixMessageAnalyzerImpl.class);
+
+    // Palabras clave específicas de la página que mostraste
+    private static final String[] HOME_SPECIFIC_PHRASES = {
+            "completa la actualización del hogar",
+            "confirma que quieres configurar tu hogar",
+            "actualización podría limitar",
+            "dispositivos que no sean parte del hogar"
+    };
+
+    private static final String[] HOME_KEYWORDS = {"hogar", "actualizar", "household", "solicitud", "dispositivos"};
+
+    private static final String[] CODE_KEYWORDS = {"codigo", "temporal", "acceso", "obtener", "dispositivo", "ver netflix"};
+
+    private static final String[] SPECIFIC_URL_KEYWORDS = {"household", "manage", "actualizar", "update", "hogar", "verify", "confirm"};
+
+    private static final String[] HREF_URL_KEYWORDS = {"household", "hogar", "update", "actualizar", "manage"};
+
+    private static final String[] CODE_URL_KEYWORDS = {"code", "codigo", "temporal", "access"};
+
+    // OPTIMIZACIÓN: Todas las reglas se compilan una vez en un único autómata (Aho-Corasick)
+    private static final MultiPatternMatcher CONTENT_MATCHER = new MultiPatternMatcher(Stream.of(
+                    HOME_SPECIFIC_PHRASES, HOME_KEYWORDS, CODE_KEYWORDS,
+                    new String[]{"http://", "https://", "href=\"", "href='"})
+            .flatMap(Arrays::stream)
+            .distinct()
+            .toList());
+
+    private static final MultiPatternMatcher CONFIRMATION_MATCHER = MultiPatternMatcher.of(
+            "confirmar actualización", "confirm update", "completa la actualización del hogar");
+
+    private static final Pattern SPECIFIC_URL_PREFIX = Pattern.compile(
+            "https?://(?:www\\.)?netflix\\.com/", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern CODE_NO_SPACE_PATTERN = Pattern.compile(
+            "usa\\s+este\\s+c[óo]digo\\s+para\\s+ver\\s+netflix[^\\d]*(\\d{4})",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern CODE_SPACED_PATTERN = Pattern.compile(
+            "ingresa\\s+este\\s+c[óo]digo[^\\d]*(\\d)\\s+(\\d)\\s+(\\d)\\s+(\\d)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final MessageBodyReader messageBodyReader;
+
+    // Peticiones HTTP en curso por URL (coalescencia de validaciones y códigos simultáneos)
+    private final Map<String, CompletableFuture<Boolean>> validationRequests = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<String>> codeRequests = new ConcurrentHashMap<>();
+
+    // HTTP Client reutilizable para evitar crear múltiples instancias
+    // Las respuestas (y el parseo con Jsoup) se procesan en hilos virtuales: sin synchronized ni E/S bajo lock
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    public NetflixMessageAnalyzerImpl(MessageBodyReader messageBodyReader) {
+        this.messageBodyReader = messageBodyReader;
+    }
+
+    @Override
+    public String findHomeLink(String content) {
+        return content != null ? findHomeLink(scanContent(content)) : null;
+    }
+
+    @Override
+    public String findHomeLink(NetflixContentScan scan) {
+        if (isHomeUpdateContent(scan)) {
+            logger.info("EMAIL DE HOGAR DETECTADO");
+            String link = findNetflixUrlInContent(scan);
+
+            if (link != null) {
+                logger.info("Enlace encontrado: {}",
+                        link.substring(0, Math.min(60, link.length())) + "...");
+
+                if (validateNetflixHomeLinkOptimized(link)) {
+                    logger.info("ENLACE VALIDADO");
+                    return link;
+                } else {
+                    logger.warn("Enlace no es válido: sin botón 'Confirmar actualización'");
+                }
+            }
+        } else {
+            logger.info("El mensaje NO es de actualización de hogar");
+        }
+        return null;
+    }
+
+    @Override
+    public String findTemporaryCode(String content) {
+        return content != null ? findTemporaryCode(scanContent(content)) : null;
+    }
+
+    @Override
+    public String findTemporaryCode(NetflixContentScan scan) {
+        if (isTemporaryCodeContent(scan)) {
+            logger.info("EMAIL DE CODIGO TEMPORAL DETECTADO");
+            String codeUrl = findTemporaryCodeUrl(scan);
+            if (codeUrl != null) {
+                return extractCodeFromUrl(codeUrl);
+            }
+        } else {
+            logger.info("El mensaje NO es de código temporal");
+        }
+        return null;
+    }
+
+    // OPTIMIZACIÓN: Solo se descarga la parte de texto elegida, con límite de bytes
+    @Override
+    public String extractMessageContent(Message message) throws MessagingException, IOException {
+        String body = messageBodyReader.readTextBody(message);
+        return body != null ? body : "";
+    }
+
+    @Override
+    public NetflixContentScan scanContent(CharSequence content) {
+        Set<String> keywords = new HashSet<>();
+        List<Integer> urlStarts = new ArrayList<>();
+        List<Integer> hrefStarts = new ArrayList<>();
+
+        // Una sola pasada: frases, palabras clave, inicios de URL y de href
+        CONTENT_MATCHER.scan(content, (keywordIndex, end) -> {
+            String keyword = CONTENT_MATCHER.keyword(keywordIndex);
+            if (keyword.startsWith("http")) {
+                urlStarts.add(end - keyword.length());
+            } else if (keyword.startsWith("href=")) {
+                hrefStarts.add(end);
+            } else {
+                keywords.add(keyword);
+            }
+        });
+
+        List<String> urls = new ArrayList<>(urlStarts.size());
+        for (int start : urlStarts) {
+            int end = start;
+            while (end < content.length() && !isUrlDelimiter(content.charAt(end))) {
+                end++;
+            }
+            urls.add(content.subSequence(start, end).toString());
+        }
+
+        List<String> hrefUrls = new ArrayList<>(hrefStarts.size());
+        List<String> codeButtonUrls = new ArrayList<>();
+        for (int start : hrefStarts) {
+            if (!startsWithIgnoreCase(content, start, "http://") && !startsWithIgnoreCase(content, start, "https://")) {
+                continue;
+            }
+            int end = start;
+            while (end < content.length() && content.charAt(end) != '"' && content.charAt(end) != '\'') {
+                end++;
+            }
+            if (end == content.length()) {
+                continue;
+            }
+            String url = content.subSequence(start, end).toString();
+            hrefUrls.add(url);
+            if (isFollowedByCodeButton(content, end + 1)) {
+                codeButtonUrls.add(url);
+            }
+        }
+
+        return new NetflixContentScan(keywords, urls, hrefUrls, codeButtonUrls);
+    }
+
+    @Override
+    public String findNetflixUrlInContent(String content) {
+        if (content == null || content.isEmpty()) {
+            return null;
+        }
+        return findNetflixUrlInContent(scanContent(content));
+    }
+
+    @Override
+    public String findNetflixUrlInContent(NetflixContentScan scan) {
+        // OPTIMIZACIÓN: Patrones más específicos basados en tu captura de pantalla
+        for (String url : scan.getUrls()) {
+            if (SPECIFIC_URL_PREFIX.matcher(url).lookingAt()
+                    && containsAnyAfter(url, url.indexOf(".com/") + 5, SPECIFIC_URL_KEYWORDS)) {
+                logger.info("URL específica de hogar encontrada");
+                return url;
+            }
+        }
+
+        // Respaldo para href
+        for (String url : scan.getHrefUrls()) {
+            if (containsNetflixThenAny(url, HREF_URL_KEYWORDS)) {
+                logger.info("URL de hogar en href encontrada");
+                return url;
+            }
+        }
+
+        logger.debug("No se encontraron URLs específicas de actualizar hogar");
+        return null;
+    }
+
+    // OPTIMIZACIÓN: Detección más específica basada en tu captura
+    @Override
+    public boolean isHomeUpdateContent(String content) {
+        return isHomeUpdateContent(scanContent(content));
+    }
+
+    @Override
+    public boolean isHomeUpdateContent(NetflixContentScan scan) {
+        // Si encuentra cualquier frase específica, es definitivamente un email de hogar
+        for (String specific : HOME_SPECIFIC_PHRASES) {
+            if (scan.contains(specific)) {
+                logger.info("Email de hogar confirmado por frase específica: {}", specific);
+                return true;
+            }
+        }
+
+        // Fallback a palabras generales
+        int keywordCount = countHits(scan, HOME_KEYWORDS);
+        boolean isRelevant = keywordCount >= 3; // Aumentado de 2 a 3 para mayor precisión
+        logger.debug("Contenido de hogar por palabras generales: {} ({}/{})",
+                isRelevant, keywordCount, HOME_KEYWORDS.length);
+
+        return isRelevant;
+    }
+
+    @Override
+    public boolean isTemporaryCodeContent(String content) {
+        return isTemporaryCodeContent(scanContent(content));
+    }
+
+    @Override
+    public boolean isTemporaryCodeContent(NetflixContentScan scan) {
+        return countHits(scan, CODE_KEYWORDS) >= 2;
+    }
+
+    @Override
+    public String findTemporaryCodeUrl(String content) {
+        return findTemporaryCodeUrl(scanContent(content));
+    }
+
+    @Override
+    public String findTemporaryCodeUrl(NetflixContentScan scan) {
+        // Enlace del botón "Obtener código"
+        for (String url : scan.getCodeButtonUrls()) {
+            if (url.toLowerCase().contains("netflix.com")) {
+                return url;
+            }
+        }
+
+        for (String url : scan.getHrefUrls()) {
+            if (containsNetflixThenAny(url, CODE_URL_KEYWORDS)) {
+                return url;
+            }
+        }
+
+        return null;
+    }
+
+    private int countHits(NetflixContentScan scan, String[] keywords) {
+        int count = 0;
+        for (String keyword : keywords) {
+            if (scan.contains(keyword)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Equivale a [^"']*netflix\.com[^"']*(palabra) sobre una URL ya delimitada
+    private boolean containsNetflixThenAny(String url, String[] keywords) {
+        int netflix = url.toLowerCase().indexOf("netflix.com");
+        return netflix >= 0 && containsAnyAfter(url, netflix + "netflix.com".length(), keywords);
+    }
+
+    private boolean containsAnyAfter(String url, int from, String[] keywords) {
+        String lowerUrl = url.toLowerCase();
+        for (String keyword : keywords) {
+            if (lowerUrl.indexOf(keyword, from) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isUrlDelimiter(char c) {
+        return Character.isWhitespace(c) || c == '"' || c == '\'' || c == '<' || c == '>' || c == ')';
+    }
+
+    // Equivale a [^>]*>\s*(?:Obtener|Get\s+code) tras la comilla de cierre del href
+    private boolean isFollowedByCodeButton(CharSequence content, int from) {
+        int i = from;
+        while (i < content.length() && content.charAt(i) != '>') {
+            i++;
+        }
+        i++;
+        while (i < content.length() && Character.isWhitespace(content.charAt(i))) {
+            i++;
+        }
+        if (startsWithIgnoreCase(content, i, "obtener")) {
+            return true;
+        }
+        if (!startsWithIgnoreCase(content, i, "get")) {
+            return false;
+        }
+        int j = i + 3;
+        while (j < content.length() && Character.isWhitespace(content.charAt(j))) {
+            j++;
+        }
+        return j > i + 3 && startsWithIgnoreCase(content, j, "code");
+    }
+
+    private boolean startsWithIgnoreCase(CharSequence content, int offset, String prefix) {
+        if (offset < 0 || offset + prefix.length() > content.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(content.charAt(offset + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String extractCodeFromUrl(String url) {
+        return extractCodeFromUrlAsync(url).join();
+    }
+
+    // OPTIMIZACIÓN: Petición no bloqueante; varias peticiones de la misma URL comparten una sola descarga
+    @Override
+    public CompletableFuture<String> extractCodeFromUrlAsync(String url) {
+        return coalesce(codeRequests, url, () -> {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
+                    .GET()
+                    .build();
+
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> response.statusCode() == 200
+                            ? extractFourDigitCode(response.body())
+                            : null);
+        }, e -> {
+            logger.error("Error obteniendo codigo: {}", rootMessage(e));
+            return null;
+        });
+    }
+
+    @Override
+    public String extractFourDigitCode(String pageContent) {
+        // Patrón para código sin espacios (como en tu captura: "2830")
+        Matcher noSpaceMatcher = CODE_NO_SPACE_PATTERN.matcher(pageContent);
+        if (noSpaceMatcher.find()) {
+            return noSpaceMatcher.group(1);
+        }
+
+        // Patrón para código con espacios (como respaldo)
+        Matcher spacedMatcher = CODE_SPACED_PATTERN.matcher(pageContent);
+        if (spacedMatcher.find()) {
+            return spacedMatcher.group(1) + spacedMatcher.group(2) +
+                    spacedMatcher.group(3) + spacedMatcher.group(4);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean validateNetflixHomeLinkOptimized(String url) {
+        return validateNetflixHomeLinkAsync(url).join();
+    }
+
+    // OPTIMIZACIÓN: Validación no bloqueante con timeout corto y una sola petición por URL en curso
+    @Override
+    public CompletableFuture<Boolean> validateNetflixHomeLinkAsync(String url) {
+        return coalesce(validationRequests, url, () -> {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(Duration.ofSeconds(8)) // Timeout reducido
+                    .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
+                    .GET()
+                    .build();
+
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> {
+                        if (response.statusCode() == 200) {
+                            return isHomeConfirmationPage(response.body());
+                        }
+                        logger.warn("HTTP {}: Enlace posiblemente expirado", response.statusCode());
+                        return false;
+                    });
+        }, e -> {
+            logger.error("Error validando enlace Netflix: {}", rootMessage(e));
+            return false;
+        });
+    }
+
+    // Si ya hay una petición en curso para la URL se reutiliza su resultado en lugar de repetirla
+    private <T> CompletableFuture<T> coalesce(Map<String, CompletableFuture<T>> inFlight, String url,
+                                              Supplier<CompletableFuture<T>> request,
+                                              Function<Throwable, T> onError) {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(url, created);
+        if (existing != null) {
+            logger.debug("Reutilizando petición en curso para la misma URL");
+            return existing;
+        }
+
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            // URL mal formada: falla antes de enviar la petición
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        response.exceptionally(onError).whenComplete((result, error) -> {
+            inFlight.remove(url, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(result);
+            }
+        });
+        return created;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage();
+    }
+
+    @Override
+    public boolean isHomeConfirmationPage(String pageBody) {
+        // OPTIMIZACIÓN: Usar búsqueda de texto simple antes de parsear HTML
+        boolean[] quickMatch = new boolean[1];
+        CONFIRMATION_MATCHER.scan(pageBody, (keywordIndex, end) -> quickMatch[0] = true);
+        if (quickMatch[0]) {
+            logger.debug("Validación rápida exitosa por contenido de texto");
+            return true;
+        }
+
+        // Solo parsear HTML si la búsqueda rápida no funciona
+        Document doc = Jsoup.parse(pageBody);
+        Elements buttons = doc.select("button, a, input[type=submit]");
+
+        for (Element btn : buttons) {
+            String text = btn.text().trim().toLowerCase();
+            if (text.contains("confirmar actualización") ||
+                    text.contains("confirmar") && text.contains("hogar")) {
+                logger.debug("Botón de confirmación detectado en HTML");
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.dtos.NetflixExtractionResult;
+import backend.consutalar_correo.services.EmailProcessorService;
+import backend.consutalar_correo.services.ExtractionMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+// OPTIMIZACIÓN: Las extracciones simultáneas del mismo buzón y tipo (doble clic, reintentos del
+// frontend, lotes y suscripciones a la vez) comparten una sola lectura IMAP y su resultado
+@Primary
+@Service
+public class SingleFlightEmailProcessorService implements EmailProcessorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightEmailProcessorService.class);
+
+    @Autowired
+    private EmailProcessorServiceImpl delegate;
+
+    @Autowired
+    private ExtractionMetrics extractionMetrics;
+
+    private final ConcurrentMap<Flight, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<String> extractNetflixHomeLink(String email) {
+        return extractNetflixHomeLinkAsync(email).join();
+    }
+
+    @Override
+    public Optional<String> extractTemporaryCode(String email) {
+        return extractTemporaryCodeAsync(email).join();
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> extractNetflixHomeLinkAsync(String email) {
+        return join(email, ExtractionKind.LINK, () -> delegate.extractNetflixHomeLinkAsync(email));
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> extractTemporaryCodeAsync(String email) {
+        return join(email, ExtractionKind.CODE, () -> delegate.extractTemporaryCodeAsync(email));
+    }
+
+    @Override
+    public NetflixExtractionResult extractAll(String email) {
+        return extractAllAsync(email).join();
+    }
+
+    // La extracción combinada tiene su propio vuelo (kind nulo): devuelve un resultado distinto
+    @Override
+    public CompletableFuture<NetflixExtractionResult> extractAllAsync(String email) {
+        return join(email, null, () -> delegate.extractAllAsync(email));
+    }
+
+    @Override
+    public boolean validateEmailConnection(String email) {
+        return delegate.validateEmailConnection(email);
+    }
+
+    @Override
+    public void forgetMailbox(Long credentialsId, String email) {
+        delegate.forgetMailbox(credentialsId, email);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> join(String email, ExtractionKind kind, Supplier<CompletableFuture<T>> extraction) {
+        Flight flight = new Flight(email == null ? "" : email.trim().toLowerCase(Locale.ROOT), kind);
+
+        CompletableFuture<T> leader = new CompletableFuture<>();
+        // Cada Flight solo se asocia a futuros del tipo que devuelve su operación
+        CompletableFuture<T> running = (CompletableFuture<T>) inFlight.putIfAbsent(flight, leader);
+        if (running != null) {
+            logger.debug("Extracción {} de {} unida a una ya en curso", kind, email);
+            extractionMetrics.singleFlight(kind, true);
+            // Cada llamante recibe su copia: completarla o cancelarla no afecta a los demás
+            return running.copy();
+        }
+        extractionMetrics.singleFlight(kind, false);
+
+        // La extracción se lanza fuera del mapa: si termina en el acto (resultado en memoria)
+        // la retirada no puede ocurrir dentro de putIfAbsent
+        try {
+            extraction.get().whenComplete((result, error) -> {
+                inFlight.remove(flight, leader);
+                if (error != null) {
+                    leader.completeExceptionally(error);
+                } else {
+                    leader.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(flight, leader);
+            leader.completeExceptionally(e);
+        }
+        return leader.copy();
+    }
+
+    private record Flight(String email, ExtractionKind kind) {}
+}
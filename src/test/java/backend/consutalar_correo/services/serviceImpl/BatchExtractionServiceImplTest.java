@@ -0,0 +1,86 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.NetflixExtractionResult;
+import backend.consutalar_correo.dtos.NetflixLinkResponse;
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.services.CredentialsCacheService;
+import backend.consutalar_correo.services.EmailProcessorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchExtractionServiceImplTest {
+
+    private static final String EMAIL = "user@gmail.com";
+
+    private BatchExtractionServiceImpl service;
+    private EmailProcessorService emailProcessorService;
+
+    @BeforeEach
+    void setUp() {
+        emailProcessorService = mock(EmailProcessorService.class);
+        CredentialsCacheService credentialsCacheService = mock(CredentialsCacheService.class);
+        EmailCredentials credentials = new EmailCredentials(EMAIL, "v2:cifrada", "gmail");
+        credentials.setImapHost("imap.gmail.com");
+        when(credentialsCacheService.findByEmail(EMAIL)).thenReturn(Optional.of(credentials));
+
+        service = new BatchExtractionServiceImpl();
+        ReflectionTestUtils.setField(service, "emailProcessorService", emailProcessorService);
+        ReflectionTestUtils.setField(service, "credentialsCacheService", credentialsCacheService);
+        ReflectionTestUtils.setField(service, "maxConcurrencyPerHost", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void bothReadsTheMailboxOnce() throws Exception {
+        when(emailProcessorService.extractAllAsync(EMAIL)).thenReturn(CompletableFuture.completedFuture(
+                new NetflixExtractionResult("https://netflix.com/hogar", "1234")));
+
+        List<NetflixLinkResponse> results = run("BOTH");
+
+        verify(emailProcessorService, times(1)).extractAllAsync(EMAIL);
+        verify(emailProcessorService, never()).extractNetflixHomeLinkAsync(anyString());
+        verify(emailProcessorService, never()).extractTemporaryCodeAsync(anyString());
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("https://netflix.com/hogar", results.get(0).getNetflixLink());
+    }
+
+    @Test
+    void singleKindUsesItsOwnExtraction() throws Exception {
+        when(emailProcessorService.extractTemporaryCodeAsync(EMAIL))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of("1234")));
+
+        List<NetflixLinkResponse> results = run("CODE");
+
+        verify(emailProcessorService, never()).extractAllAsync(anyString());
+        verify(emailProcessorService, never()).extractNetflixHomeLinkAsync(anyString());
+        assertTrue(results.get(0).isSuccess());
+    }
+
+    private List<NetflixLinkResponse> run(String kind) throws Exception {
+        List<NetflixLinkResponse> results = new CopyOnWriteArrayList<>();
+        service.extractBatch(List.of(EMAIL, " USER@gmail.com"), kind, results::add).get(5, TimeUnit.SECONDS);
+        return results;
+    }
+}
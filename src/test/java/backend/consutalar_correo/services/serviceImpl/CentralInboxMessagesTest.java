@@ -0,0 +1,56 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CentralInboxMessagesTest {
+
+    @Test
+    void matchesHeaderRecipientsIgnoringCase() throws Exception {
+        Message message = message("User@Gmail.com");
+
+        assertTrue(CentralInboxMessages.isAddressedTo(message, null, " user@gmail.COM "));
+        assertFalse(CentralInboxMessages.isAddressedTo(message, null, "otro@gmail.com"));
+    }
+
+    @Test
+    void matchesForwardedAddressesInTheBody() throws Exception {
+        Message message = message("central@empresa.com");
+
+        assertTrue(CentralInboxMessages.isAddressedTo(message, "Reenviado de: User@Gmail.com", "user@gmail.com"));
+        // Una dirección contenida en otra no cuenta, igual que en el índice
+        assertFalse(CentralInboxMessages.isAddressedTo(message, "Para: xuser@gmail.com", "user@gmail.com"));
+    }
+
+    @Test
+    void bodyAddressesBeyondTheLimitAreIgnored() throws Exception {
+        Message message = message("central@empresa.com");
+        String body = IntStream.range(0, 20).mapToObj(i -> "lista" + i + "@empresa.com")
+                .collect(Collectors.joining(" ")) + " user@gmail.com";
+
+        assertFalse(CentralInboxMessages.isAddressedTo(message, body, "user@gmail.com"));
+    }
+
+    @Test
+    void receivedAtFallsBackWhenTheDateIsMissing() throws Exception {
+        assertEquals(42L, CentralInboxMessages.receivedAtOf(message("user@gmail.com"), 42L));
+    }
+
+    private static Message message(String to) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(to));
+        message.setSubject("Netflix: actualiza tu hogar");
+        return message;
+    }
+}
@@ -0,0 +1,78 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.services.EncryptionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CredentialsCacheServiceImplTest {
+
+    private static final String EMAIL = "user@gmail.com";
+
+    private CredentialsCacheServiceImpl service;
+    private EmailCredentialsRepository repository;
+    private EncryptionService encryptionService;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(EmailCredentialsRepository.class);
+        encryptionService = mock(EncryptionService.class);
+        service = new CredentialsCacheServiceImpl();
+        ReflectionTestUtils.setField(service, "emailCredentialsRepository", repository);
+        ReflectionTestUtils.setField(service, "encryptionService", encryptionService);
+
+        when(encryptionService.needsUpgrade("legacy")).thenReturn(true);
+        when(encryptionService.decrypt("legacy")).thenReturn("secreto");
+        when(encryptionService.encrypt("secreto")).thenReturn("v2:nuevo");
+    }
+
+    @Test
+    void legacyRowIsUpgradedWithAConditionalUpdate() {
+        when(repository.findByEmail(EMAIL)).thenReturn(Optional.of(credentials("legacy")));
+        when(repository.upgradeEncryptedPassword(7L, "legacy", "v2:nuevo")).thenReturn(1);
+
+        EmailCredentials found = service.findByEmail(EMAIL).orElseThrow();
+
+        assertEquals("v2:nuevo", found.getEncryptedPassword());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void concurrentPasswordChangeWinsOverTheUpgrade() {
+        when(repository.findByEmail(EMAIL)).thenReturn(Optional.of(credentials("legacy")));
+        when(repository.upgradeEncryptedPassword(7L, "legacy", "v2:nuevo")).thenReturn(0);
+
+        EmailCredentials found = service.findByEmail(EMAIL).orElseThrow();
+
+        // La fila ya cambió en la base de datos: no se da por migrada
+        assertEquals("legacy", found.getEncryptedPassword());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void v2RowIsNotTouched() {
+        when(repository.findByEmail(EMAIL)).thenReturn(Optional.of(credentials("v2:actual")));
+
+        assertEquals("v2:actual", service.findByEmail(EMAIL).orElseThrow().getEncryptedPassword());
+        verify(repository, never()).upgradeEncryptedPassword(anyLong(), anyString(), anyString());
+    }
+
+    private static EmailCredentials credentials(String encryptedPassword) {
+        EmailCredentials credentials = new EmailCredentials(EMAIL, encryptedPassword, "gmail");
+        credentials.setId(7L);
+        return credentials;
+    }
+}
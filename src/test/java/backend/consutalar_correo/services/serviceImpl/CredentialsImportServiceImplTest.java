@@ -0,0 +1,93 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.CredentialsImportResponse;
+import backend.consutalar_correo.dtos.CredentialsRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class CredentialsImportServiceImplTest {
+
+    private CredentialsImportServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        // Solo se prueba el análisis del CSV: la importación en sí se sustituye
+        service = spy(new CredentialsImportServiceImpl());
+        doReturn(new CredentialsImportResponse(List.of(), 0)).when(service).importCredentials(anyList());
+    }
+
+    @Test
+    void parsesRowsInHeaderOrder() {
+        List<CredentialsRequest> rows = parse("""
+                provider,Email,PASSWORD
+                gmail, user@gmail.com ,secreto
+                outlook,otro@outlook.com,clave
+                """);
+
+        assertEquals(2, rows.size());
+        assertRow(rows.get(0), "user@gmail.com", "secreto", "gmail");
+        assertRow(rows.get(1), "otro@outlook.com", "clave", "outlook");
+    }
+
+    @Test
+    void keepsQuotedCommasAndEscapedQuotesInThePassword() {
+        List<CredentialsRequest> rows = parse("""
+                email,password,provider
+                user@gmail.com,"a,b""c",gmail
+                """);
+
+        assertRow(rows.get(0), "user@gmail.com", "a,b\"c", "gmail");
+    }
+
+    @Test
+    void passwordIsNotTrimmed() {
+        List<CredentialsRequest> rows = parse("email,password,provider\n user@gmail.com , con espacio ,gmail\n");
+
+        assertRow(rows.get(0), "user@gmail.com", " con espacio ", "gmail");
+    }
+
+    @Test
+    void skipsBlankLinesAndAcceptsCrLf() {
+        List<CredentialsRequest> rows = parse("email,password,provider\r\n\r\nuser@gmail.com,x,gmail\r\n   \r\n");
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), "user@gmail.com", "x", "gmail");
+    }
+
+    @Test
+    void missingTrailingFieldsAreNull() {
+        List<CredentialsRequest> rows = parse("email,password,provider\nuser@gmail.com\n");
+
+        assertRow(rows.get(0), "user@gmail.com", null, null);
+    }
+
+    @Test
+    void rejectsEmptyCsvAndIncompleteHeader() {
+        assertThrows(IllegalArgumentException.class, () -> service.importCsv("  "));
+        assertThrows(IllegalArgumentException.class, () -> service.importCsv("email,password\nuser@gmail.com,x\n"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CredentialsRequest> parse(String csv) {
+        service.importCsv(csv);
+        ArgumentCaptor<List<CredentialsRequest>> rows = ArgumentCaptor.forClass(List.class);
+        verify(service).importCredentials(rows.capture());
+        return rows.getValue();
+    }
+
+    private static void assertRow(CredentialsRequest row, String email, String password, String provider) {
+        assertEquals(email, row.getEmail());
+        assertEquals(password, row.getPassword());
+        assertEquals(provider, row.getProvider());
+    }
+}
@@ -0,0 +1,53 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CredentialsVerificationServiceImplTest {
+
+    private CredentialsVerificationServiceImpl service;
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new CredentialsVerificationServiceImpl();
+        // Las tareas se quedan en cola: la verificación sigue "en curso" mientras no se ejecuten
+        ReflectionTestUtils.setField(service, "imapTaskExecutor", (Executor) queued::add);
+    }
+
+    @Test
+    void repeatedRequestsJoinTheVerificationInFlight() {
+        EmailCredentials credentials = credentials("v2:actual");
+
+        CompletableFuture<String> first = service.verifyAsync(credentials);
+        CompletableFuture<String> second = service.verifyAsync(credentials);
+
+        assertEquals(1, queued.size());
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+    }
+
+    @Test
+    void newPasswordStartsItsOwnVerification() {
+        service.verifyAsync(credentials("v2:antigua"));
+        service.verifyAsync(credentials("v2:nueva"));
+
+        assertEquals(2, queued.size());
+    }
+
+    private static EmailCredentials credentials(String encryptedPassword) {
+        EmailCredentials credentials = new EmailCredentials("user@gmail.com", encryptedPassword, "gmail");
+        credentials.setId(7L);
+        return credentials;
+    }
+}
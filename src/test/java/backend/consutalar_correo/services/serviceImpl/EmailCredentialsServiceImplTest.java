@@ -0,0 +1,92 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.repositories.EmailCredentialsRepository;
+import backend.consutalar_correo.services.CredentialsVerificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailCredentialsServiceImplTest {
+
+    private static final String EMAIL = "user@gmail.com";
+
+    private EmailCredentialsServiceImpl service;
+    private EmailCredentialsRepository repository;
+    private CredentialsVerificationService credentialsVerificationService;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(EmailCredentialsRepository.class);
+        credentialsVerificationService = mock(CredentialsVerificationService.class);
+        when(credentialsVerificationService.verifyAsync(any())).thenReturn(new CompletableFuture<>());
+
+        service = new EmailCredentialsServiceImpl();
+        ReflectionTestUtils.setField(service, "repository", repository);
+        ReflectionTestUtils.setField(service, "credentialsVerificationService", credentialsVerificationService);
+        ReflectionTestUtils.setField(service, "errorRetryMs", 300000L);
+    }
+
+    @Test
+    void recordedResultIsReturnedWithoutLogin() {
+        stored(CredentialsVerificationService.VALID, Instant.now());
+        assertEquals(CredentialsVerificationService.VALID, service.validateCredentials(EMAIL));
+
+        stored(CredentialsVerificationService.INVALID, Instant.now().minusSeconds(3600));
+        assertEquals(CredentialsVerificationService.INVALID, service.validateCredentials(EMAIL));
+
+        verify(credentialsVerificationService, never()).verifyAsync(any());
+    }
+
+    @Test
+    void pendingStartsVerificationWithoutWaiting() {
+        EmailCredentials credentials = stored(null, null);
+
+        assertEquals(CredentialsVerificationService.PENDING, service.validateCredentials(EMAIL));
+        verify(credentialsVerificationService).verifyAsync(credentials);
+    }
+
+    @Test
+    void recentErrorIsReportedAsError() {
+        stored(CredentialsVerificationService.ERROR, Instant.now().minusSeconds(10));
+
+        assertEquals(CredentialsVerificationService.ERROR, service.validateCredentials(EMAIL));
+        verify(credentialsVerificationService, never()).verifyAsync(any());
+    }
+
+    @Test
+    void oldErrorIsVerifiedAgain() {
+        EmailCredentials credentials = stored(CredentialsVerificationService.ERROR, Instant.now().minusSeconds(600));
+
+        assertEquals(CredentialsVerificationService.PENDING, service.validateCredentials(EMAIL));
+        verify(credentialsVerificationService).verifyAsync(credentials);
+    }
+
+    @Test
+    void unknownEmailHasNoStatus() {
+        when(repository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        assertNull(service.validateCredentials(EMAIL));
+    }
+
+    private EmailCredentials stored(String status, Instant verifiedAt) {
+        EmailCredentials credentials = new EmailCredentials(EMAIL, "v2:actual", "gmail");
+        credentials.setId(7L);
+        credentials.setVerificationStatus(status);
+        credentials.setVerifiedAt(verifiedAt);
+        when(repository.findByEmail(EMAIL)).thenReturn(Optional.of(credentials));
+        return credentials;
+    }
+}
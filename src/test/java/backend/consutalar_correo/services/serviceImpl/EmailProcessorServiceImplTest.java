@@ -0,0 +1,94 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.ImapHostGuardProperties;
+import backend.consutalar_correo.entities.EmailCredentials;
+import backend.consutalar_correo.services.CredentialsCacheService;
+import backend.consutalar_correo.services.ExtractionMetrics;
+import backend.consutalar_correo.services.ImapConnectionPool;
+import jakarta.mail.Store;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailProcessorServiceImplTest {
+
+    private static final String EMAIL = "user@gmail.com";
+    private static final String HOST = "imap.gmail.com";
+
+    private EmailProcessorServiceImpl service;
+    private ImapHostGuardImpl imapHostGuard;
+    private ImapConnectionPool imapConnectionPool;
+    private ImapConnectionPool.Reservation reservation;
+    private ImapConnectionPool.Lease lease;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ImapHostGuardProperties properties = new ImapHostGuardProperties();
+        properties.setInitialLimit(8);
+        properties.setBackoffRatio(0.5);
+        properties.setLatencyThresholdMs(50);
+        imapHostGuard = new ImapHostGuardImpl();
+        ReflectionTestUtils.setField(imapHostGuard, "properties", properties);
+        imapHostGuard.init();
+
+        EmailCredentials credentials = new EmailCredentials(EMAIL, "v2:cifrada", "gmail");
+        credentials.setId(7L);
+        credentials.setImapHost(HOST);
+        CredentialsCacheService credentialsCacheService = mock(CredentialsCacheService.class);
+        when(credentialsCacheService.findByEmail(EMAIL)).thenReturn(Optional.of(credentials));
+        when(credentialsCacheService.decryptPassword("v2:cifrada")).thenReturn("secreto");
+
+        ExtractionMetrics extractionMetrics = mock(ExtractionMetrics.class);
+        when(extractionMetrics.stage(anyString(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<ExtractionMetrics.StageCall<?, ?>>getArgument(3).call());
+
+        Store store = mock(Store.class);
+        when(store.isConnected()).thenReturn(true);
+        lease = mock(ImapConnectionPool.Lease.class);
+        when(lease.getStore()).thenReturn(store);
+        reservation = mock(ImapConnectionPool.Reservation.class);
+        imapConnectionPool = mock(ImapConnectionPool.class);
+
+        service = new EmailProcessorServiceImpl();
+        ReflectionTestUtils.setField(service, "credentialsCacheService", credentialsCacheService);
+        ReflectionTestUtils.setField(service, "imapConnectionPool", imapConnectionPool);
+        ReflectionTestUtils.setField(service, "imapHostGuard", imapHostGuard);
+        ReflectionTestUtils.setField(service, "extractionMetrics", extractionMetrics);
+    }
+
+    @Test
+    void waitingForABusyMailboxDoesNotLowerTheHostLimit() throws Exception {
+        // El buzón tarda en dar hueco (otro préstamo en curso), pero el servidor responde al momento
+        when(imapConnectionPool.reserve(any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return reservation;
+        });
+        when(reservation.lease("secreto")).thenReturn(lease);
+
+        assertTrue(service.validateEmailConnection(EMAIL));
+
+        assertEquals(8, imapHostGuard.currentLimit(HOST));
+    }
+
+    @Test
+    void slowLoginStillLowersTheHostLimit() throws Exception {
+        when(imapConnectionPool.reserve(any())).thenReturn(reservation);
+        when(reservation.lease("secreto")).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return lease;
+        });
+
+        assertTrue(service.validateEmailConnection(EMAIL));
+
+        assertEquals(4, imapHostGuard.currentLimit(HOST));
+    }
+}
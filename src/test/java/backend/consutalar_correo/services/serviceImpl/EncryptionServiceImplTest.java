@@ -0,0 +1,90 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncryptionServiceImplTest {
+
+    private static final String SECRET = "myDefaultSecretKey123456";
+
+    // La derivación PBKDF2 es lenta a propósito: una instancia para toda la clase
+    private static EncryptionServiceImpl encryptionService;
+
+    @BeforeAll
+    static void setUp() {
+        encryptionService = new EncryptionServiceImpl(SECRET, "actualizaHogar");
+    }
+
+    @Test
+    void v2RoundTrip() {
+        for (String password : new String[]{"", "secreto", "contraseña con ñ y €", "a".repeat(500)}) {
+            String encrypted = encryptionService.encrypt(password);
+
+            assertTrue(encrypted.startsWith("v2:"));
+            assertFalse(encryptionService.needsUpgrade(encrypted));
+            assertEquals(password, encryptionService.decrypt(encrypted));
+        }
+    }
+
+    @Test
+    void v2UsesAFreshIvPerEncryption() {
+        assertNotEquals(encryptionService.encrypt("secreto"), encryptionService.encrypt("secreto"));
+    }
+
+    @Test
+    void tamperedV2CiphertextIsRejected() {
+        byte[] payload = Base64.getDecoder().decode(encryptionService.encrypt("secreto").substring(3));
+        payload[payload.length - 1] ^= 1;
+
+        String tampered = "v2:" + Base64.getEncoder().encodeToString(payload);
+        assertThrows(RuntimeException.class, () -> encryptionService.decrypt(tampered));
+    }
+
+    @Test
+    void v2CiphertextDependsOnTheSalt() {
+        String encrypted = encryptionService.encrypt("secreto");
+        EncryptionServiceImpl otherSalt = new EncryptionServiceImpl(SECRET, "otraSal");
+
+        assertThrows(RuntimeException.class, () -> otherSalt.decrypt(encrypted));
+    }
+
+    @Test
+    void readsLegacyEcbCiphertext() throws Exception {
+        String legacy = legacyEncrypt("contraseña antigua");
+
+        assertTrue(encryptionService.needsUpgrade(legacy));
+        assertEquals("contraseña antigua", encryptionService.decrypt(legacy));
+    }
+
+    @Test
+    void upgradedLegacyCiphertextKeepsThePassword() throws Exception {
+        String legacy = legacyEncrypt("secreto");
+
+        String upgraded = encryptionService.encrypt(encryptionService.decrypt(legacy));
+
+        assertFalse(encryptionService.needsUpgrade(upgraded));
+        assertEquals("secreto", encryptionService.decrypt(upgraded));
+    }
+
+    // Cifrado anterior: AES/ECB con los primeros 16 bytes del secreto como clave
+    private static String legacyEncrypt(String plainText) throws Exception {
+        byte[] keyBytes = new byte[16];
+        byte[] secret = SECRET.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(secret, 0, keyBytes, 0, Math.min(secret.length, keyBytes.length));
+
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keyBytes, "AES"));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,103 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.dtos.ExtractionResultEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ExtractionResultStoreImplTest {
+
+    private static final String EMAIL = "user@gmail.com";
+    private static final long VALIDITY_MS = 900000;
+
+    private ExtractionResultStoreImpl store;
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        store = new ExtractionResultStoreImpl();
+        ReflectionTestUtils.setField(store, "linkValidityMs", VALIDITY_MS);
+        ReflectionTestUtils.setField(store, "codeValidityMs", VALIDITY_MS);
+        ReflectionTestUtils.setField(store, "maxEntries", 100L);
+        ReflectionTestUtils.setField(store, "eventPublisher", eventPublisher);
+        store.init();
+    }
+
+    @Test
+    void storesAndPublishesANewResult() {
+        store.put(EMAIL, ExtractionKind.LINK, "https://netflix.com/a", 10, Instant.now());
+
+        assertEquals(Optional.of("https://netflix.com/a"), store.get(" USER@gmail.com ", ExtractionKind.LINK));
+        assertEquals(Optional.empty(), store.get(EMAIL, ExtractionKind.CODE));
+        verify(eventPublisher).publishEvent(any(ExtractionResultEvent.class));
+    }
+
+    @Test
+    void olderUidNeverOverwritesANewerOne() {
+        store.put(EMAIL, ExtractionKind.LINK, "nuevo", 20, Instant.now());
+        store.put(EMAIL, ExtractionKind.LINK, "antiguo", 10, Instant.now());
+
+        assertEquals(Optional.of("nuevo"), store.get(EMAIL, ExtractionKind.LINK));
+        // Solo se avisa del resultado que se guardó
+        verify(eventPublisher, times(1)).publishEvent(any(ExtractionResultEvent.class));
+
+        store.put(EMAIL, ExtractionKind.LINK, "siguiente", 30, Instant.now());
+        assertEquals(Optional.of("siguiente"), store.get(EMAIL, ExtractionKind.LINK));
+    }
+
+    @Test
+    void alreadyExpiredResultIsNotStored() {
+        store.put(EMAIL, ExtractionKind.CODE, "1234", 10, Instant.now().minusMillis(VALIDITY_MS + 1000));
+
+        assertEquals(Optional.empty(), store.get(EMAIL, ExtractionKind.CODE));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void resultExpiresWithTheMailNotWithTheWrite() throws InterruptedException {
+        // Recibido hace casi todo el periodo de validez: caduca en ~100 ms aunque se acabe de guardar
+        store.put(EMAIL, ExtractionKind.CODE, "1234", 10, Instant.now().minusMillis(VALIDITY_MS - 100));
+        assertEquals(Optional.of("1234"), store.get(EMAIL, ExtractionKind.CODE));
+
+        Thread.sleep(300);
+
+        assertEquals(Optional.empty(), store.get(EMAIL, ExtractionKind.CODE));
+    }
+
+    @Test
+    void newerMailInvalidatesOlderResult() {
+        store.put(EMAIL, ExtractionKind.LINK, "enlace", 10, Instant.now());
+
+        store.invalidateOlderThan(EMAIL, ExtractionKind.LINK, 5);
+        assertEquals(Optional.of("enlace"), store.get(EMAIL, ExtractionKind.LINK));
+
+        store.invalidateOlderThan(EMAIL, ExtractionKind.LINK, 11);
+        assertEquals(Optional.empty(), store.get(EMAIL, ExtractionKind.LINK));
+    }
+
+    @Test
+    void invalidateRemovesEveryKindOfTheMailbox() {
+        store.put(EMAIL, ExtractionKind.LINK, "enlace", 10, Instant.now());
+        store.put(EMAIL, ExtractionKind.CODE, "1234", 11, Instant.now());
+        store.put("otro@gmail.com", ExtractionKind.LINK, "otro", 12, Instant.now());
+
+        store.invalidate(EMAIL);
+
+        assertEquals(Optional.empty(), store.get(EMAIL, ExtractionKind.LINK));
+        assertEquals(Optional.empty(), store.get(EMAIL, ExtractionKind.CODE));
+        assertEquals(Optional.of("otro"), store.get("otro@gmail.com", ExtractionKind.LINK));
+    }
+}
@@ -0,0 +1,171 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.ImapHostGuardProperties;
+import backend.consutalar_correo.exception.ImapBusyException;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImapHostGuardImplTest {
+
+    private static final String HOST = "imap.gmail.com";
+
+    private ImapHostGuardImpl guard;
+    private ImapHostGuardProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ImapHostGuardProperties();
+        properties.setInitialLimit(8);
+        properties.setMinLimit(1);
+        properties.setMaxLimit(10);
+        properties.setBackoffRatio(0.5);
+        properties.setAcquireTimeoutMs(50);
+        // Sin apertura del circuito durante las pruebas del límite
+        properties.setMinimumCalls(1000);
+        properties.setSlidingWindowSize(1000);
+
+        guard = new ImapHostGuardImpl();
+        ReflectionTestUtils.setField(guard, "properties", properties);
+        guard.init();
+    }
+
+    @Test
+    void hostFailureHalvesTheLimitDownToTheMinimum() {
+        fail(new MessagingException("conexión rechazada"));
+        assertEquals(4, limit());
+
+        fail(new MessagingException("conexión rechazada"));
+        fail(new MessagingException("conexión rechazada"));
+        fail(new MessagingException("conexión rechazada"));
+        assertEquals(1, limit());
+    }
+
+    @Test
+    void slowCallReducesTheLimit() throws Exception {
+        properties.setLatencyThresholdMs(5);
+
+        guard.execute(HOST, () -> {
+            sleep(30);
+            return null;
+        });
+
+        assertEquals(4, limit());
+    }
+
+    @Test
+    void authenticationFailureDoesNotReduceTheLimit() {
+        fail(new AuthenticationFailedException("contraseña incorrecta"));
+
+        assertEquals(8, limit());
+    }
+
+    @Test
+    void idleHostDoesNotGrowTheLimit() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            guard.execute(HOST, () -> null);
+        }
+
+        // Una llamada cada vez no usa ni la mitad del límite
+        assertEquals(8, limit());
+    }
+
+    @Test
+    void fullyUsedLimitGrowsByOne() throws Exception {
+        properties.setInitialLimit(1);
+
+        guard.execute(HOST, () -> null);
+        assertEquals(2, limit());
+
+        // Con límite 2 una llamada usa justo la mitad y sigue creciendo; con 3 ya no
+        guard.execute(HOST, () -> null);
+        assertEquals(3, limit());
+
+        guard.execute(HOST, () -> null);
+        assertEquals(3, limit());
+    }
+
+    @Test
+    void limitNeverExceedsTheMaximum() throws Exception {
+        properties.setInitialLimit(1);
+        properties.setMaxLimit(2);
+
+        for (int i = 0; i < 3; i++) {
+            guard.execute(HOST, () -> null);
+        }
+
+        assertEquals(2, limit());
+    }
+
+    @Test
+    void callsBeyondTheLimitAreRejected() throws Exception {
+        properties.setInitialLimit(1);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return guard.execute(HOST, () -> {
+                    entered.countDown();
+                    await(release);
+                    return null;
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ImapBusyException.class, () -> guard.execute(HOST, () -> null));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        guard.execute(HOST, () -> null);
+    }
+
+    @Test
+    void hostNamesAreCaseInsensitive() {
+        fail(new MessagingException("conexión rechazada"));
+
+        assertThrows(MessagingException.class, () -> guard.execute("IMAP.Gmail.com", () -> {
+            throw new MessagingException("conexión rechazada");
+        }));
+        assertEquals(2, limit());
+    }
+
+    private void fail(MessagingException error) {
+        assertThrows(MessagingException.class, () -> guard.execute(HOST, () -> {
+            throw error;
+        }));
+    }
+
+    private int limit() {
+        return guard.currentLimit(HOST);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
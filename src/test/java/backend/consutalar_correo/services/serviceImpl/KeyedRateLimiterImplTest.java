@@ -0,0 +1,96 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.config.RateLimitProperties;
+import backend.consutalar_correo.dtos.RateLimitScope;
+import backend.consutalar_correo.services.KeyedRateLimiter.Key;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedRateLimiterImplTest {
+
+    private static final Key EMAIL = Key.of(RateLimitScope.EMAIL, "user@gmail.com");
+    private static final Key OTHER_EMAIL = Key.of(RateLimitScope.EMAIL, "otro@gmail.com");
+    private static final Key PROVIDER = Key.provider("user@gmail.com");
+
+    private KeyedRateLimiterImpl limiter;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        // Periodos largos: durante el test no se repone ningún permiso
+        properties.setEmail(new RateLimitProperties.Bucket(3, 600000));
+        properties.setProvider(new RateLimitProperties.Bucket(4, 600000));
+
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new KeyedRateLimiterImpl();
+        ReflectionTestUtils.setField(limiter, "rateLimitProperties", properties);
+        ReflectionTestUtils.setField(limiter, "meterRegistry", meterRegistry);
+        limiter.init();
+    }
+
+    @Test
+    void admitsTheBurstThenRejectsWithRetryAfter() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(List.of(EMAIL)));
+        }
+
+        long waitMs = limiter.tryAcquire(List.of(EMAIL));
+        // Un permiso se repone cada periodo / capacidad
+        assertTrue(waitMs > 0 && waitMs <= 200000, "espera: " + waitMs);
+        assertEquals(1.0, meterRegistry.counter("netflix.ratelimit.rejected", "scope", "email").count());
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(List.of(EMAIL)));
+        }
+
+        assertTrue(limiter.tryAcquire(List.of(EMAIL)) > 0);
+        assertEquals(0, limiter.tryAcquire(List.of(OTHER_EMAIL)));
+    }
+
+    @Test
+    void keysAreNormalized() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(List.of(Key.of(RateLimitScope.EMAIL, " USER@gmail.com "))));
+        }
+
+        assertTrue(limiter.tryAcquire(List.of(EMAIL)) > 0);
+    }
+
+    @Test
+    void refundsTakenPermitsWhenAnotherKeyIsExhausted() {
+        // Agota el proveedor con otros emails del mismo dominio
+        assertEquals(0, limiter.tryAcquire(List.of(PROVIDER, PROVIDER, PROVIDER, PROVIDER)));
+
+        // El email tiene cupo pero el proveedor no: no se consume nada
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(List.of(EMAIL, PROVIDER)) > 0);
+        }
+        assertEquals(5.0, meterRegistry.counter("netflix.ratelimit.rejected", "scope", "provider").count());
+
+        // El cupo del email sigue intacto
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire(List.of(EMAIL)));
+        }
+        assertTrue(limiter.tryAcquire(List.of(EMAIL)) > 0);
+    }
+
+    @Test
+    void repeatedKeysConsumeOnePermitEach() {
+        assertTrue(limiter.tryAcquire(List.of(EMAIL, EMAIL, EMAIL, EMAIL)) > 0);
+
+        // Un lote que no cabe entero no consume nada
+        assertEquals(0, limiter.tryAcquire(List.of(EMAIL, EMAIL, EMAIL)));
+        assertTrue(limiter.tryAcquire(List.of(EMAIL)) > 0);
+    }
+}
@@ -0,0 +1,79 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiPatternMatcherTest {
+
+    private static final List<String> KEYWORDS = List.of(
+            "hogar", "actualizar", "household", "solicitud", "dispositivos", "dispositivo",
+            "completa la actualización del hogar", "codigo", "ver netflix", "http://", "https://", "href=\"");
+
+    private static final List<String> TEXTS = List.of(
+            "",
+            "Sin coincidencias en este texto",
+            "COMPLETA LA ACTUALIZACIÓN DEL HOGAR desde tus dispositivos",
+            "Solicitud de Household: <a href=\"https://www.netflix.com/account/update-primary-location\">Actualizar</a>",
+            "dispositivodispositivos hogarhogar",
+            "Usa este CODIGO para Ver Netflix en http://netflix.com/codigo",
+            "ácentos ÁCENTOS ñandú — hogar€household");
+
+    @Test
+    void reportsTheSameMatchesAsCaseInsensitiveRegex() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(KEYWORDS);
+
+        for (String text : TEXTS) {
+            List<String> expected = new ArrayList<>();
+            for (int k = 0; k < KEYWORDS.size(); k++) {
+                // Lookahead para contar también coincidencias solapadas, igual que el autómata
+                Pattern pattern = Pattern.compile("(?=(" + Pattern.quote(KEYWORDS.get(k)) + "))",
+                        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                Matcher m = pattern.matcher(text);
+                while (m.find()) {
+                    expected.add(k + "@" + m.end(1));
+                }
+            }
+
+            List<String> actual = new ArrayList<>();
+            matcher.scan(text, (keywordIndex, end) -> actual.add(keywordIndex + "@" + end));
+
+            assertEquals(expected.stream().sorted().toList(), actual.stream().sorted().toList(), text);
+        }
+    }
+
+    @Test
+    void findsKeywordsLegacyContainsFound() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(KEYWORDS);
+
+        for (String text : TEXTS) {
+            String lower = text.toLowerCase();
+            boolean[] found = new boolean[matcher.size()];
+            matcher.scan(text, (keywordIndex, end) -> found[keywordIndex] = true);
+
+            for (int k = 0; k < KEYWORDS.size(); k++) {
+                assertEquals(lower.contains(KEYWORDS.get(k)), found[k], KEYWORDS.get(k) + " en: " + text);
+            }
+        }
+    }
+
+    @Test
+    void keywordsAreStoredInLowerCase() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.of("Confirm Update", "HOGAR");
+
+        assertEquals("confirm update", matcher.keyword(0));
+        assertEquals("hogar", matcher.keyword(1));
+
+        boolean[] found = new boolean[2];
+        matcher.scan("Pulsa CONFIRM update", (keywordIndex, end) -> found[keywordIndex] = true);
+        assertTrue(found[0]);
+        assertFalse(found[1]);
+    }
+}
@@ -0,0 +1,104 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NetflixMessageAnalyzerImplTest {
+
+    // Expresiones de la detección anterior, como referencia del comportamiento esperado
+    private static final Pattern LEGACY_SPECIFIC_URL = Pattern.compile(
+            "https?://(?:www\\.)?netflix\\.com/[^\\s\"'<>)]*(?:household|manage|actualizar|update|hogar|verify|confirm)[^\\s\"'<>)]*",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern LEGACY_HREF_URL = Pattern.compile(
+            "href=[\"'](https?://[^\"']*netflix\\.com[^\"']*(?:household|hogar|update|actualizar|manage)[^\"']*)[\"']",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern LEGACY_CODE_BUTTON = Pattern.compile(
+            "href=[\"'](https?://[^\"']*netflix\\.com[^\"']*)[\"'][^>]*>\\s*(?:Obtener\\s+codigo|Obtener|Get\\s+code)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern LEGACY_CODE_HREF = Pattern.compile(
+            "href=[\"'](https?://[^\"']*netflix\\.com[^\"']*(?:code|codigo|temporal|access)[^\"']*)[\"']",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final List<String> FIXTURES = List.of(
+            "",
+            "Hola, gracias por ser miembro.",
+            "<p>Completa la actualización del Hogar con Netflix</p>"
+                    + "<a href=\"https://www.netflix.com/account/update-primary-location?nftoken=abc\">Sí, fui yo</a>",
+            "Hogar, household y dispositivos: visita https://netflix.com/ManageHousehold?g=1 ahora",
+            "Solicitud para actualizar tu hogar <a href='https://help.netflix.com/hogar/actualizar'>ayuda</a>",
+            "Código de acceso temporal para ver Netflix desde tu dispositivo."
+                    + "<a href=\"https://www.netflix.com/account/travel/verify?nftoken=xyz\" style=\"x\">\n  Obtener código</a>",
+            "Tu código temporal: <a href=\"https://netflix.com/ilum?code=1234\">aquí</a> para obtener acceso",
+            "Enlaces ajenos http://example.com/hogar y href=\"https://example.com/household\" sin netflix");
+
+    private final NetflixMessageAnalyzerImpl analyzer = new NetflixMessageAnalyzerImpl(null);
+
+    @Test
+    void findsTheSameHomeUrlAsLegacyRegex() {
+        for (String content : FIXTURES) {
+            assertEquals(legacyFindNetflixUrl(content), analyzer.findNetflixUrlInContent(content), content);
+        }
+    }
+
+    @Test
+    void findsTheSameCodeUrlAsLegacyRegex() {
+        for (String content : FIXTURES) {
+            assertEquals(legacyFindTemporaryCodeUrl(content), analyzer.findTemporaryCodeUrl(content), content);
+        }
+    }
+
+    @Test
+    void classifiesContentLikeLegacyKeywordCount() {
+        for (String content : FIXTURES) {
+            String lower = content.toLowerCase();
+            boolean legacyHome = lower.contains("completa la actualización del hogar")
+                    || lower.contains("confirma que quieres configurar tu hogar")
+                    || lower.contains("actualización podría limitar")
+                    || lower.contains("dispositivos que no sean parte del hogar")
+                    || count(lower, "hogar", "actualizar", "household", "solicitud", "dispositivos") >= 3;
+            boolean legacyCode = count(lower, "codigo", "temporal", "acceso", "obtener", "dispositivo", "ver netflix") >= 2;
+
+            assertEquals(legacyHome, analyzer.isHomeUpdateContent(content), content);
+            assertEquals(legacyCode, analyzer.isTemporaryCodeContent(content), content);
+        }
+    }
+
+    private static int count(String lower, String... keywords) {
+        int hits = 0;
+        for (String keyword : keywords) {
+            if (lower.contains(keyword)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static String legacyFindNetflixUrl(String content) {
+        if (content.isEmpty()) {
+            return null;
+        }
+        Matcher specific = LEGACY_SPECIFIC_URL.matcher(content);
+        if (specific.find()) {
+            return specific.group();
+        }
+        Matcher href = LEGACY_HREF_URL.matcher(content);
+        return href.find() ? href.group(1) : null;
+    }
+
+    private static String legacyFindTemporaryCodeUrl(String content) {
+        Matcher button = LEGACY_CODE_BUTTON.matcher(content);
+        if (button.find()) {
+            return button.group(1);
+        }
+        Matcher href = LEGACY_CODE_HREF.matcher(content);
+        return href.find() ? href.group(1) : null;
+    }
+}
@@ -0,0 +1,126 @@
+package backend.consutalar_correo.services.serviceImpl;
+
+import backend.consutalar_correo.dtos.ExtractionKind;
+import backend.consutalar_correo.services.ExtractionMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SingleFlightEmailProcessorServiceTest {
+
+    private static final String EMAIL = "user@gmail.com";
+
+    private SingleFlightEmailProcessorService service;
+    private EmailProcessorServiceImpl delegate;
+    private ExtractionMetrics extractionMetrics;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(EmailProcessorServiceImpl.class);
+        extractionMetrics = mock(ExtractionMetrics.class);
+        service = new SingleFlightEmailProcessorService();
+        ReflectionTestUtils.setField(service, "delegate", delegate);
+        ReflectionTestUtils.setField(service, "extractionMetrics", extractionMetrics);
+    }
+
+    @Test
+    void concurrentCallsShareOneExtraction() {
+        CompletableFuture<Optional<String>> pending = new CompletableFuture<>();
+        when(delegate.extractNetflixHomeLinkAsync(EMAIL)).thenReturn(pending);
+
+        CompletableFuture<Optional<String>> first = service.extractNetflixHomeLinkAsync(EMAIL);
+        CompletableFuture<Optional<String>> second = service.extractNetflixHomeLinkAsync(" USER@gmail.com ");
+
+        verify(delegate, times(1)).extractNetflixHomeLinkAsync(EMAIL);
+        verify(extractionMetrics).singleFlight(ExtractionKind.LINK, false);
+        verify(extractionMetrics).singleFlight(ExtractionKind.LINK, true);
+
+        pending.complete(Optional.of("https://netflix.com/a"));
+        assertEquals(Optional.of("https://netflix.com/a"), first.join());
+        assertEquals(Optional.of("https://netflix.com/a"), second.join());
+    }
+
+    @Test
+    void finishedFlightIsNotReused() {
+        when(delegate.extractTemporaryCodeAsync(EMAIL))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of("1111")))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of("2222")));
+
+        assertEquals(Optional.of("1111"), service.extractTemporaryCode(EMAIL));
+        assertEquals(Optional.of("2222"), service.extractTemporaryCode(EMAIL));
+        verify(delegate, times(2)).extractTemporaryCodeAsync(EMAIL);
+    }
+
+    @Test
+    void differentKindsDoNotShareAFlight() {
+        when(delegate.extractNetflixHomeLinkAsync(EMAIL)).thenReturn(new CompletableFuture<>());
+        when(delegate.extractTemporaryCodeAsync(EMAIL)).thenReturn(new CompletableFuture<>());
+
+        service.extractNetflixHomeLinkAsync(EMAIL);
+        service.extractTemporaryCodeAsync(EMAIL);
+
+        verify(delegate).extractNetflixHomeLinkAsync(EMAIL);
+        verify(delegate).extractTemporaryCodeAsync(EMAIL);
+    }
+
+    @Test
+    void failureReachesEveryWaiterAndClearsTheFlight() {
+        CompletableFuture<Optional<String>> pending = new CompletableFuture<>();
+        when(delegate.extractNetflixHomeLinkAsync(EMAIL))
+                .thenReturn(pending)
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        CompletableFuture<Optional<String>> first = service.extractNetflixHomeLinkAsync(EMAIL);
+        CompletableFuture<Optional<String>> second = service.extractNetflixHomeLinkAsync(EMAIL);
+
+        IllegalStateException failure = new IllegalStateException("IMAP caído");
+        pending.completeExceptionally(failure);
+
+        assertSame(failure, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(failure, assertThrows(CompletionException.class, second::join).getCause());
+
+        // El siguiente intento lanza una extracción nueva
+        assertEquals(Optional.empty(), service.extractNetflixHomeLinkAsync(EMAIL).join());
+        verify(delegate, times(2)).extractNetflixHomeLinkAsync(EMAIL);
+    }
+
+    @Test
+    void synchronousFailureOfTheDelegateIsPropagated() {
+        when(delegate.extractTemporaryCodeAsync(EMAIL))
+                .thenThrow(new IllegalArgumentException("credenciales no encontradas"))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of("1234")));
+
+        CompletableFuture<Optional<String>> failed = service.extractTemporaryCodeAsync(EMAIL);
+        assertTrue(failed.isCompletedExceptionally());
+
+        assertEquals(Optional.of("1234"), service.extractTemporaryCodeAsync(EMAIL).join());
+    }
+
+    @Test
+    void cancellingOneWaiterDoesNotAffectTheOthers() {
+        CompletableFuture<Optional<String>> pending = new CompletableFuture<>();
+        when(delegate.extractNetflixHomeLinkAsync(EMAIL)).thenReturn(pending);
+
+        CompletableFuture<Optional<String>> first = service.extractNetflixHomeLinkAsync(EMAIL);
+        CompletableFuture<Optional<String>> second = service.extractNetflixHomeLinkAsync(EMAIL);
+        first.cancel(true);
+
+        pending.complete(Optional.of("enlace"));
+        assertFalse(second.isCancelled());
+        assertEquals(Optional.of("enlace"), second.join());
+    }
+}